@@ -0,0 +1,128 @@
+package ms.paint;
+
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// --- KLASA POMOCNICZA: OBRAZ PPM 16-BITOWY (maxVal > 255) BEZ UTRATY DANYCH ---
+// Próbki trzymane są w BufferedImage z rastrem TYPE_USHORT (R,G,B przeplatane) - dokładnie
+// w układzie danych P6, więc odczyt i zapis to hurtowe kopiowanie przez ShortBuffer (big-endian),
+// bez przeliczania pikseli. Do wyświetlenia tylko widoczny fragment jest mapowany tonalnie
+// do 8 bitów (LUT 0..maxVal -> 0..255), a dane źródłowe zostają nienaruszone.
+class HighDepthImage {
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private final BufferedImage image;
+    private final short[] samples;
+    private final int maxVal;
+    private final int[] toneLut;
+    // Bufor widoku używany ponownie, dopóki rozmiar widocznego fragmentu się nie zmienia
+    private BufferedImage view;
+
+    private HighDepthImage(BufferedImage image, int maxVal) {
+        this.image = image;
+        this.samples = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+        this.maxVal = maxVal;
+        this.toneLut = PpmReader.scaleLut(maxVal);
+    }
+
+    static BufferedImage createUShortRgb(int width, int height) {
+        ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        ComponentColorModel cm = new ComponentColorModel(cs, new int[] {16, 16, 16}, false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+        WritableRaster raster = cm.createCompatibleWritableRaster(width, height);
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    static HighDepthImage read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            PpmReader.Header header = PpmReader.readHeader(channel);
+            if ((long) header.width * header.height * 3 > Integer.MAX_VALUE)
+                throw new IOException("Obraz za duży: " + header.width + "x" + header.height);
+            HighDepthImage result = new HighDepthImage(createUShortRgb(header.width, header.height), header.maxVal);
+            channel.position(header.dataOffset);
+            if (header.ascii) {
+                result.readP3(channel);
+            } else if (header.bytesPerSample() == 2) {
+                result.readP6(channel);
+            } else {
+                throw new IOException("Plik ma 8 bitów na próbkę (maxVal " + header.maxVal + ")");
+            }
+            return result;
+        }
+    }
+
+    private void readP6(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        for (int offset = 0; offset < samples.length; ) {
+            int count = Math.min(READ_BUFFER_BYTES / 2, samples.length - offset);
+            buffer.clear().limit(count * 2);
+            PpmReader.readFully(channel, buffer);
+            buffer.flip();
+            // ByteBuffer jest domyślnie big-endian - tak jak próbki P6
+            buffer.asShortBuffer().get(samples, offset, count);
+            offset += count;
+        }
+    }
+
+    private void readP3(FileChannel channel) throws IOException {
+        PpmReader.P3Tokenizer tokenizer = new PpmReader.P3Tokenizer(channel, READ_BUFFER_BYTES);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.min(tokenizer.nextSample(), maxVal);
+        }
+    }
+
+    int getWidth() { return image.getWidth(); }
+    int getHeight() { return image.getHeight(); }
+    int getMaxVal() { return maxVal; }
+    short[] getSamples() { return samples; }
+
+    // Surowa wartość próbki (band 0 = R, 1 = G, 2 = B)
+    int sample(int x, int y, int band) {
+        return samples[(y * image.getWidth() + x) * 3 + band] & 0xFFFF;
+    }
+
+    // Fragment rect w 8 bitach, co step-ty piksel (przy pomniejszeniu nie ma sensu mapować wszystkich).
+    // Zwrócony obraz jest współdzielony między wywołaniami - ważny do następnego toneMap.
+    BufferedImage toneMap(Rectangle rect, int step) {
+        int vw = (rect.width + step - 1) / step;
+        int vh = (rect.height + step - 1) / step;
+        if (view == null || view.getWidth() != vw || view.getHeight() != vh) {
+            view = new BufferedImage(vw, vh, BufferedImage.TYPE_INT_RGB);
+        }
+        toneMapInto(rect, step, view);
+        return view;
+    }
+
+    // Cały obraz w 8 bitach jako nowy TYPE_INT_RGB (np. do zapisu JPEG)
+    BufferedImage toEightBit() {
+        BufferedImage result = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+        toneMapInto(new Rectangle(0, 0, getWidth(), getHeight()), 1, result);
+        return result;
+    }
+
+    private void toneMapInto(Rectangle rect, int step, BufferedImage target) {
+        int[] dst = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        int width = image.getWidth();
+        int vw = target.getWidth();
+        int[] lut = toneLut;
+        for (int j = 0, y = rect.y; j < target.getHeight(); j++, y += step) {
+            int src = (y * width + rect.x) * 3;
+            for (int i = 0, d = j * vw; i < vw; i++, d++, src += 3 * step) {
+                dst[d] = (lut[samples[src] & 0xFFFF] << 16) | (lut[samples[src + 1] & 0xFFFF] << 8) | lut[samples[src + 2] & 0xFFFF];
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ms.paint;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// --- KLASA POMOCNICZA: ZAPIS JPEG Z PULĄ WRITERÓW ---
+// ImageWriter JPEG jest wyszukiwany raz (zapamiętany jego ImageWriterSpi), a wolne instancje wracają
+// do puli po reset(). Każdy zapis zamyka ImageOutputStream także przy wyjątku.
+// compare() koduje ten sam obraz w kilku jakościach równolegle i zwraca rozmiar oraz czas każdego
+// kodowania razem z gotowymi bajtami - wybrany wariant można zapisać bez ponownego kodowania.
+class JpegExportService {
+
+    private static final int MAX_IDLE_WRITERS = 8;
+
+    // Wynik kodowania w jednej jakości
+    static final class Result {
+        final float quality;
+        final byte[] data;
+        final long encodeNanos;
+
+        Result(float quality, byte[] data, long encodeNanos) {
+            this.quality = quality;
+            this.data = data;
+            this.encodeNanos = encodeNanos;
+        }
+
+        int size() {
+            return data.length;
+        }
+    }
+
+    private final ImageWriterSpi spi;
+    private final BlockingQueue<ImageWriter> idle = new LinkedBlockingQueue<>(MAX_IDLE_WRITERS);
+
+    JpegExportService() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (writers.hasNext()) {
+            ImageWriter writer = writers.next();
+            spi = writer.getOriginatingProvider();
+            idle.offer(writer);
+        } else {
+            spi = null;
+        }
+    }
+
+    void write(BufferedImage image, File file, float quality) throws IOException {
+        ImageWriter writer = acquire();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(file)) {
+            if (ios == null) throw new IOException("Nie można zapisać pliku: " + file);
+            encode(writer, image, ios, quality);
+        } finally {
+            release(writer);
+        }
+    }
+
+    byte[] encode(BufferedImage image, float quality) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageWriter writer = acquire();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(bytes)) {
+            encode(writer, image, ios, quality);
+        } finally {
+            release(writer);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Równoległe kodowanie w każdej z jakości; wyniki w kolejności qualities
+    List<Result> compare(BufferedImage image, float[] qualities) throws IOException {
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (float quality : qualities) {
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                byte[] data = encode(image, quality);
+                return new Result(quality, data, System.nanoTime() - start);
+            });
+        }
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Przerwano kodowanie JPEG");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static void encode(ImageWriter writer, BufferedImage image, ImageOutputStream ios, float quality)
+            throws IOException {
+        writer.setOutput(ios);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        writer.write(null, new IIOImage(image, null, null), param);
+    }
+
+    private ImageWriter acquire() throws IOException {
+        ImageWriter writer = idle.poll();
+        if (writer != null) return writer;
+        if (spi == null) throw new IOException("Brak obsługi JPEG!");
+        return spi.createWriterInstance();
+    }
+
+    private void release(ImageWriter writer) {
+        writer.reset();
+        if (!idle.offer(writer)) writer.dispose();
+    }
+}
@@ -1,15 +1,33 @@
 package ms.paint;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
 import java.util.StringTokenizer;
+import java.util.concurrent.CancellationException;
 
 public class Main extends JFrame {
     private BufferedImage image;
+    // Duży P6 otwarty przez mapowanie pamięci (wtedy image == null)
+    private TiledPpmImage tiledImage;
+    private JCheckBoxMenuItem tiledModeItem;
+    // PPM z maxVal > 255 wczytany bez kwantyzacji do 8 bitów (wtedy image == null)
+    private HighDepthImage hdImage;
+    private JCheckBoxMenuItem keep16BitItem;
+    private JCheckBoxMenuItem pixelGridItem;
+    private JCheckBoxMenuItem pixelValuesItem;
+    private final long tileCacheBudget = Long.getLong("grafika.tiles.mb", 256L) * 1024 * 1024;
     private JLabel imageLabel;
     private double zoom = 1.0;
     private int offsetX = 0, offsetY = 0;
@@ -17,6 +35,16 @@ public class Main extends JFrame {
     private JFileChooser chooser = new JFileChooser();
 
     private ImagePanel imagePanel;
+    // Trwające wczytywanie pliku (null, gdy nic się nie wczytuje)
+    private LoadTask currentLoad;
+    // Pula writerów JPEG współdzielona przez zapis i porównanie jakości
+    private final JpegExportService jpegExport = new JpegExportService();
+    // Dyskowy indeks miniatur, otwierany przy pierwszym przeglądaniu katalogu
+    private ThumbnailCache thumbnailCache;
+    private boolean thumbnailCacheOpened;
+    private static final float[] COMPARED_QUALITIES = {0.3f, 0.5f, 0.7f, 0.8f, 0.9f, 0.95f, 1.0f};
+    // Wiersz zaznaczany na starcie - ta sama domyślna jakość co w askJPEGQuality
+    private static final float DEFAULT_JPEG_QUALITY = 0.9f;
 
     public Main() {
         super("PPM & JPEG Viewer");
@@ -33,11 +61,18 @@ public class Main extends JFrame {
 
     // zamiast JLabel — własny panel
     private class ImagePanel extends JPanel {
+        // Od tego powiększenia piksele rysowane są jako komórki (fillRect), a nie przez skalowany drawImage
+        private static final double CELL_ZOOM = 8;
+        // Minimalny rozmiar komórki (w pikselach ekranu), przy którym mieszczą się etykiety RGB
+        private static final int LABEL_MIN_CELL = 36;
+        private static final Color GRID_COLOR = new Color(128, 128, 128, 160);
+
         private Point lastDrag;
+        private int[] cellBuffer = new int[0];
 
         public ImagePanel() {
             addMouseWheelListener(e -> {
-                if (image == null) return;
+                if (!hasImage()) return;
                 double oldZoom = zoom;
                 if (e.getPreciseWheelRotation() < 0) zoom *= 1.25;
                 else zoom /= 1.25;
@@ -69,11 +104,16 @@ public class Main extends JFrame {
                 }
 
                 public void mouseMoved(MouseEvent e) {
-                    if (image == null || zoom < 8) return;
+                    if (!hasImage() || zoom < 8) return;
                     int x = (int) ((e.getX() - offsetX) / zoom);
                     int y = (int) ((e.getY() - offsetY) / zoom);
-                    if (x >= 0 && y >= 0 && x < image.getWidth() && y < image.getHeight()) {
-                        int rgb = image.getRGB(x, y);
+                    if (x >= 0 && y >= 0 && x < imageWidth() && y < imageHeight()) {
+                        if (hdImage != null) {
+                            setTitle(String.format("x=%d y=%d | R=%d G=%d B=%d (maxVal %d)", x, y,
+                                    hdImage.sample(x, y, 0), hdImage.sample(x, y, 1), hdImage.sample(x, y, 2), hdImage.getMaxVal()));
+                            return;
+                        }
+                        int rgb = image != null ? image.getRGB(x, y) : tiledImage.getRGB(x, y);
                         int r = (rgb >> 16) & 0xFF;
                         int g = (rgb >> 8) & 0xFF;
                         int b = rgb & 0xFF;
@@ -86,23 +126,168 @@ public class Main extends JFrame {
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            if (image == null) return;
+            if (!hasImage()) return;
 
             Graphics2D g2 = (Graphics2D) g.create();
             g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            Rectangle clip = g2.getClipBounds();
+            if (zoom >= CELL_ZOOM) {
+                paintCells(g2, clip);
+                g2.dispose();
+                return;
+            }
             g2.translate(offsetX, offsetY);
             g2.scale(zoom, zoom);
-            g2.drawImage(image, 0, 0, null);
+            if (image != null) {
+                g2.drawImage(image, 0, 0, null);
+            } else if (hdImage != null) {
+                paintToneMapped(g2, clip);
+            } else {
+                paintTiles(g2, clip);
+            }
             g2.dispose();
         }
 
+        // Duże powiększenie: tylko widoczne piksele jako wypełnione prostokąty w układzie ekranu,
+        // opcjonalnie z siatką i wartościami RGB. Koszt klatki zależy od liczby widocznych komórek, nie od obrazu.
+        private void paintCells(Graphics2D g2, Rectangle clip) {
+            Rectangle visible = visibleImageRect(clip);
+            if (visible == null) return;
+            int w = visible.width; int h = visible.height;
+            int[] rgb = visiblePixels(visible);
+
+            for (int j = 0; j < h; j++) {
+                int top = cellEdge(offsetY, visible.y + j);
+                int bottom = cellEdge(offsetY, visible.y + j + 1);
+                // Sąsiednie komórki o tym samym kolorze - jeden fillRect
+                for (int i = 0; i < w; ) {
+                    int color = rgb[j * w + i];
+                    int run = i + 1;
+                    while (run < w && rgb[j * w + run] == color) run++;
+                    int left = cellEdge(offsetX, visible.x + i);
+                    int right = cellEdge(offsetX, visible.x + run);
+                    g2.setColor(new Color(color));
+                    g2.fillRect(left, top, right - left, bottom - top);
+                    i = run;
+                }
+            }
+
+            if (pixelGridItem.isSelected()) {
+                g2.setColor(GRID_COLOR);
+                int top = cellEdge(offsetY, visible.y); int bottom = cellEdge(offsetY, visible.y + h);
+                int left = cellEdge(offsetX, visible.x); int right = cellEdge(offsetX, visible.x + w);
+                for (int i = 0; i <= w; i++) {
+                    int x = cellEdge(offsetX, visible.x + i);
+                    g2.drawLine(x, top, x, bottom);
+                }
+                for (int j = 0; j <= h; j++) {
+                    int y = cellEdge(offsetY, visible.y + j);
+                    g2.drawLine(left, y, right, y);
+                }
+            }
+
+            if (pixelValuesItem.isSelected() && zoom >= LABEL_MIN_CELL) {
+                paintCellLabels(g2, visible, rgb);
+            }
+        }
+
+        private void paintCellLabels(Graphics2D g2, Rectangle visible, int[] rgb) {
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            Font font = getFont().deriveFont((float) Math.min(14, zoom / 4));
+            g2.setFont(font);
+            FontMetrics fm = g2.getFontMetrics();
+            int lineHeight = fm.getHeight();
+            for (int j = 0; j < visible.height; j++) {
+                int top = cellEdge(offsetY, visible.y + j);
+                for (int i = 0; i < visible.width; i++) {
+                    int left = cellEdge(offsetX, visible.x + i);
+                    int x = visible.x + i; int y = visible.y + j;
+                    int color = rgb[j * visible.width + i];
+                    int[] values = hdImage != null
+                            ? new int[] {hdImage.sample(x, y, 0), hdImage.sample(x, y, 1), hdImage.sample(x, y, 2)}
+                            : new int[] {(color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF};
+                    // Tekst kontrastowy względem jasności komórki
+                    int luminance = (((color >> 16) & 0xFF) * 299 + ((color >> 8) & 0xFF) * 587 + (color & 0xFF) * 114) / 1000;
+                    g2.setColor(luminance > 128 ? Color.BLACK : Color.WHITE);
+                    int textY = top + (int) ((zoom - 3 * lineHeight) / 2) + fm.getAscent();
+                    for (int band = 0; band < 3; band++) {
+                        g2.drawString("RGB".charAt(band) + "=" + values[band], left + 3, textY + band * lineHeight);
+                    }
+                }
+            }
+        }
+
+        // Krawędź komórki piksela index w układzie panelu; zaokrąglenie w dół daje komórki bez przerw
+        private int cellEdge(int offset, int index) {
+            return (int) Math.floor(offset + index * zoom);
+        }
+
+        // Piksele (8-bit RGB) widocznego prostokąta, wiersz po wierszu; bufor wielokrotnego użytku
+        private int[] visiblePixels(Rectangle visible) {
+            int count = visible.width * visible.height;
+            if (cellBuffer.length < count) cellBuffer = new int[count];
+            if (image != null) {
+                image.getRGB(visible.x, visible.y, visible.width, visible.height, cellBuffer, 0, visible.width);
+            } else if (hdImage != null) {
+                hdImage.toneMap(visible, 1).getRGB(0, 0, visible.width, visible.height, cellBuffer, 0, visible.width);
+            } else {
+                for (int j = 0; j < visible.height; j++)
+                    for (int i = 0; i < visible.width; i++)
+                        cellBuffer[j * visible.width + i] = tiledImage.getRGB(visible.x + i, visible.y + j);
+            }
+            return cellBuffer;
+        }
+
+        // Widoczny prostokąt w pikselach obrazu dla obszaru odświeżania (clip w układzie panelu); null, gdy pusty
+        private Rectangle visibleImageRect(Rectangle clip) {
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            int x0 = Math.max(0, (int) Math.floor((clip.x - offsetX) / zoom));
+            int y0 = Math.max(0, (int) Math.floor((clip.y - offsetY) / zoom));
+            int x1 = Math.min(imageWidth(), (int) Math.ceil((clip.x + clip.width - offsetX) / zoom));
+            int y1 = Math.min(imageHeight(), (int) Math.ceil((clip.y + clip.height - offsetY) / zoom));
+            if (x0 >= x1 || y0 >= y1) return null;
+            return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        }
+
+        // Obraz 16-bitowy: do 8 bitów mapowany jest tylko widoczny fragment, przy pomniejszeniu co step-ty piksel
+        private void paintToneMapped(Graphics2D g2, Rectangle clip) {
+            Rectangle visible = visibleImageRect(clip);
+            if (visible == null) return;
+            int step = 1 << TiledPpmImage.levelFor(zoom);
+            BufferedImage view = hdImage.toneMap(visible, step);
+            g2.drawImage(view, visible.x, visible.y,
+                    visible.x + view.getWidth() * step, visible.y + view.getHeight() * step,
+                    0, 0, view.getWidth(), view.getHeight(), null);
+        }
+
+        // Rysuje tylko kafle przecinające obszar odświeżania
+        private void paintTiles(Graphics2D g2, Rectangle clip) {
+            Rectangle visible = visibleImageRect(clip);
+            if (visible == null) return;
+            int level = TiledPpmImage.levelFor(zoom);
+            int step = 1 << level;
+            int extent = TiledPpmImage.TILE_SIZE << level;
+            int x0 = visible.x; int y0 = visible.y;
+            int x1 = visible.x + visible.width; int y1 = visible.y + visible.height;
+
+            for (int ty = y0 / extent; ty <= (y1 - 1) / extent; ty++) {
+                for (int tx = x0 / extent; tx <= (x1 - 1) / extent; tx++) {
+                    BufferedImage tile = tiledImage.tile(level, tx, ty);
+                    int sx = tx * extent; int sy = ty * extent;
+                    // Kafel poziomu level rozciągnięty z powrotem do rozmiaru w pikselach źródła
+                    g2.drawImage(tile, sx, sy, sx + tile.getWidth() * step, sy + tile.getHeight() * step,
+                            0, 0, tile.getWidth(), tile.getHeight(), null);
+                }
+            }
+        }
+
 
         @Override
         public Dimension getPreferredSize() {
-            if (image == null) return new Dimension(800, 600);
+            if (!hasImage()) return new Dimension(800, 600);
             return new Dimension(
-                    (int) (image.getWidth() * zoom + Math.abs(offsetX)),
-                    (int) (image.getHeight() * zoom + Math.abs(offsetY))
+                    (int) (imageWidth() * zoom + Math.abs(offsetX)),
+                    (int) (imageHeight() * zoom + Math.abs(offsetY))
             );
         }
     }
@@ -111,49 +296,283 @@ public class Main extends JFrame {
         JMenuBar bar = new JMenuBar();
         JMenu file = new JMenu("Plik");
         JMenuItem open = new JMenuItem("Otwórz...");
+        JMenuItem browse = new JMenuItem("Przeglądaj katalog (miniatury)...");
         JMenuItem saveJpg = new JMenuItem("Zapisz jako JPEG...");
+        JMenuItem compareJpg = new JMenuItem("Porównaj jakości JPEG...");
+        JMenuItem savePpm = new JMenuItem("Zapisz jako PPM (P6)...");
         JMenuItem exit = new JMenuItem("Zamknij");
+        JMenuItem convert = new JMenuItem("Konwertuj PPM do JPEG (strumieniowo)...");
+        tiledModeItem = new JCheckBoxMenuItem("Duże PPM: mapowanie pamięci i kafle");
+        keep16BitItem = new JCheckBoxMenuItem("PPM 16-bit: zachowaj pełną głębię");
 
         open.addActionListener(e -> openFile());
+        browse.addActionListener(e -> browseDirectory());
         saveJpg.addActionListener(e -> saveAsJPEG());
+        compareJpg.addActionListener(e -> compareJPEGQualities());
+        savePpm.addActionListener(e -> saveAsPPM());
+        convert.addActionListener(e -> convertPPMToJPEG());
         exit.addActionListener(e -> System.exit(0));
 
         file.add(open);
+        file.add(browse);
         file.add(saveJpg);
+        file.add(compareJpg);
+        file.add(savePpm);
+        file.add(convert);
+        file.addSeparator();
+        file.add(tiledModeItem);
+        file.add(keep16BitItem);
         file.addSeparator();
         file.add(exit);
         bar.add(file);
+
+        // Przy powiększeniu od 8x piksele są komórkami - siatka i etykiety RGB są opcjonalne
+        JMenu view = new JMenu("Widok");
+        pixelGridItem = new JCheckBoxMenuItem("Siatka pikseli (powiększenie od 8x)", true);
+        pixelValuesItem = new JCheckBoxMenuItem("Wartości RGB w pikselach (powiększenie od 36x)");
+        pixelGridItem.addActionListener(e -> imagePanel.repaint());
+        pixelValuesItem.addActionListener(e -> imagePanel.repaint());
+        view.add(pixelGridItem);
+        view.add(pixelValuesItem);
+        bar.add(view);
         setJMenuBar(bar);
     }
 
     private void openFile() {
         if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            File f = chooser.getSelectedFile();
+            openFile(chooser.getSelectedFile());
+        }
+    }
+
+    private void openFile(File f) {
+        // Poprzednie wczytywanie (jeśli trwa) jest przerywane - kanał pliku zamyka się przy przerwaniu wątku
+        if (currentLoad != null) currentLoad.cancel(true);
+        currentLoad = new LoadTask(f);
+        currentLoad.execute();
+    }
+
+    private ThumbnailCache thumbnailCache() {
+        if (!thumbnailCacheOpened) {
+            thumbnailCacheOpened = true;
             try {
-                String name = f.getName().toLowerCase();
-                if (name.endsWith(".ppm")) {
-                    image = readPPM(f);
-                } else if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
-                    image = ImageIO.read(f);
+                thumbnailCache = ThumbnailCache.open(ThumbnailCache.defaultIndexFile());
+            } catch (IOException e) {
+                // Bez indeksu przeglądarka działa dalej, tylko każdą miniaturę dekoduje od nowa
+                thumbnailCache = null;
+            }
+        }
+        return thumbnailCache;
+    }
+
+    private void browseDirectory() {
+        JFileChooser dirChooser = new JFileChooser(chooser.getCurrentDirectory());
+        dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (dirChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            new ThumbnailBrowser(this, dirChooser.getSelectedFile(), thumbnailCache(), jpegExport, this::openFile)
+                    .setVisible(true);
+        }
+    }
+
+    // Dekodowanie poza EDT: obraz trafia do panelu od razu po utworzeniu, a gotowe pasy wierszy
+    // są publikowane i odświeżane tylko w swoim obszarze. Tryb kafli i 16-bitowy nie są przyrostowe.
+    private class LoadTask extends SwingWorker<Object, Object> implements PpmReader.RowListener {
+        private final File file;
+        // Stan menu odczytany na EDT - komponentów Swing nie wolno czytać z wątku roboczego
+        private final boolean tiledMode;
+        private final boolean keep16Bit;
+
+        LoadTask(File file) {
+            this.file = file;
+            this.tiledMode = tiledModeItem.isSelected();
+            this.keep16Bit = keep16BitItem.isSelected();
+        }
+
+        @Override
+        protected Object doInBackground() throws Exception {
+            String name = file.getName().toLowerCase();
+            if (name.endsWith(".ppm")) {
+                PpmReader.Header header = readHeader(file);
+                if (useTiledMode(header, tiledMode)) return TiledPpmImage.open(file, tileCacheBudget);
+                if (keep16Bit && header.maxVal > 255) return HighDepthImage.read(file);
+                return PpmReader.read(file, this);
+            } else if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+                return readJPEG(file, this);
+            }
+            throw new IOException("Nieobsługiwany format pliku!");
+        }
+
+        @Override
+        public void imageCreated(BufferedImage created) {
+            publish(created);
+        }
+
+        @Override
+        public void rowsDecoded(int yStart, int yEnd) {
+            if (isCancelled()) throw new CancellationException();
+            publish(new int[] {yStart, yEnd});
+        }
+
+        @Override
+        protected void process(java.util.List<Object> chunks) {
+            if (currentLoad != this) return;
+            int dirtyStart = Integer.MAX_VALUE, dirtyEnd = -1;
+            for (Object chunk : chunks) {
+                if (chunk instanceof BufferedImage created) {
+                    showImage(created, null, null);
                 } else {
-                    throw new IOException("Nieobsługiwany format pliku!");
+                    int[] rows = (int[]) chunk;
+                    dirtyStart = Math.min(dirtyStart, rows[0]);
+                    dirtyEnd = Math.max(dirtyEnd, rows[1]);
+                }
+            }
+            if (dirtyEnd > dirtyStart) repaintRows(dirtyStart, dirtyEnd);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || currentLoad != this) return;
+            currentLoad = null;
+            try {
+                Object result = get();
+                if (result == image) {
+                    imagePanel.repaint();
+                } else if (result instanceof BufferedImage loaded) {
+                    showImage(loaded, null, null);
+                } else if (result instanceof HighDepthImage highDepth) {
+                    showImage(null, highDepth, null);
+                } else if (result instanceof TiledPpmImage tiled) {
+                    showImage(null, null, tiled);
                 }
-                zoom = 1.0;
-                offsetX = offsetY = 0;
-                imagePanel.repaint();
             } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, ex.getMessage(), "Błąd", JOptionPane.ERROR_MESSAGE);
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                JOptionPane.showMessageDialog(Main.this, cause.getMessage(), "Błąd", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void showImage(BufferedImage loaded, HighDepthImage highDepth, TiledPpmImage tiled) {
+        if (tiledImage != null && tiledImage != tiled) tiledImage.clearCache();
+        image = loaded;
+        hdImage = highDepth;
+        tiledImage = tiled;
+        zoom = 1.0;
+        offsetX = offsetY = 0;
+        imagePanel.revalidate();
+        imagePanel.repaint();
+    }
+
+    // Odświeża tylko pas wierszy obrazu [yStart, yEnd) w układzie panelu
+    private void repaintRows(int yStart, int yEnd) {
+        int top = (int) Math.floor(offsetY + yStart * zoom);
+        int bottom = (int) Math.ceil(offsetY + yEnd * zoom);
+        int left = (int) Math.floor(offsetX);
+        int right = (int) Math.ceil(offsetX + imageWidth() * zoom);
+        imagePanel.repaint(left, top, right - left, bottom - top);
+    }
+
+    // JPEG przez ImageReader z docelowym obrazem utworzonym z góry - IIOReadUpdateListener
+    // zgłasza kolejne zdekodowane wiersze (przy JPEG progresywnym także kolejne przebiegi)
+    private static BufferedImage readJPEG(File f, PpmReader.RowListener listener) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(f)) {
+            if (iis == null) throw new IOException("Nie można otworzyć pliku: " + f);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) throw new IOException("Nieobsługiwany format pliku!");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                BufferedImage target = reader.getImageTypes(0).next()
+                        .createBufferedImage(reader.getWidth(0), reader.getHeight(0));
+                param.setDestination(target);
+                listener.imageCreated(target);
+                reader.addIIOReadUpdateListener(new IIOReadUpdateListener() {
+                    @Override
+                    public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY,
+                                            int width, int height, int periodX, int periodY, int[] bands) {
+                        try {
+                            listener.rowsDecoded(minY, Math.min(target.getHeight(), minY + height * periodY));
+                        } catch (CancellationException e) {
+                            source.abort();
+                        }
+                    }
+
+                    @Override public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass,
+                                                      int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) { }
+                    @Override public void passComplete(ImageReader source, BufferedImage theImage) { }
+                    @Override public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass,
+                                                               int minPass, int maxPass, int minX, int minY,
+                                                               int periodX, int periodY, int[] bands) { }
+                    @Override public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY,
+                                                          int width, int height, int periodX, int periodY, int[] bands) { }
+                    @Override public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) { }
+                });
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private boolean hasImage() {
+        return image != null || hdImage != null || tiledImage != null;
+    }
+
+    private int imageWidth() {
+        if (image != null) return image.getWidth();
+        return hdImage != null ? hdImage.getWidth() : tiledImage.getWidth();
+    }
+
+    private int imageHeight() {
+        if (image != null) return image.getHeight();
+        return hdImage != null ? hdImage.getHeight() : tiledImage.getHeight();
+    }
+
+    private PpmReader.Header readHeader(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath())) {
+            return PpmReader.readHeader(channel);
+        }
+    }
+
+    // Kafle, gdy włączono je w menu albo gdy pełny raster int[] zająłby ponad połowę sterty
+    private boolean useTiledMode(PpmReader.Header header, boolean tiledMode) {
+        if (header.ascii) return false;
+        long pixels = (long) header.width * header.height;
+        return tiledMode
+                || pixels * 4 > Runtime.getRuntime().maxMemory() / 2
+                || pixels > Integer.MAX_VALUE;
+    }
+
+    private void saveAsPPM() {
+        if (!hasImage()) return;
+        if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File f = chooser.getSelectedFile();
+            try {
+                if (image != null) PpmWriter.writeP6(image, f);
+                else if (hdImage != null) PpmWriter.writeP6(hdImage, f);
+                // Obraz kaflowy to niezmieniony plik P6 - wystarczy kopia
+                else Files.copy(tiledImage.getFile().toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                JOptionPane.showMessageDialog(this, "Zapisano pomyślnie!");
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Błąd zapisu", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
 
     private void saveAsJPEG() {
-        if (image == null) return;
+        if (tiledImage != null) {
+            // Obraz kaflowy nie mieści się w pamięci - konwersja strumieniowa prosto z pliku źródłowego
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                transcodeInBackground(tiledImage.getFile(), chooser.getSelectedFile(), askJPEGQuality());
+            }
+            return;
+        }
+        if (image == null && hdImage == null) return;
         if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File f = chooser.getSelectedFile();
             try {
                 float quality = askJPEGQuality();
-                saveJPEG(image, f, quality);
+                saveJPEG(image != null ? image : hdImage.toEightBit(), f, quality);
                 JOptionPane.showMessageDialog(this, "Zapisano pomyślnie!");
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, ex.getMessage(), "Błąd zapisu", JOptionPane.ERROR_MESSAGE);
@@ -161,123 +580,120 @@ public class Main extends JFrame {
         }
     }
 
-    private float askJPEGQuality() {
-        String q = JOptionPane.showInputDialog(this, "Stopień kompresji (0.1–1.0):", "0.9");
-        try {
-            float val = Float.parseFloat(q);
-            return Math.min(1f, Math.max(0.1f, val));
-        } catch (Exception e) {
-            return 0.9f;
-        }
+    // PPM -> JPEG pasami wierszy, bez otwierania obrazu w przeglądarce
+    private void convertPPMToJPEG() {
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File source = chooser.getSelectedFile();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        transcodeInBackground(source, chooser.getSelectedFile(), askJPEGQuality());
     }
 
-    //  PPM
-    private BufferedImage readPPM(File f) throws IOException {
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(f));
-             PushbackInputStream pis = new PushbackInputStream(bis, 1)) {
-
-            String magic = readToken(pis);
-            if (magic == null) throw new IOException("Brak nagłówka");
-            if (!magic.equals("P3") && !magic.equals("P6"))
-                throw new IOException("Nieobsługiwany format: " + magic);
-            boolean ascii = magic.equals("P3");
-
-            int width = Integer.parseInt(readToken(pis));
-            int height = Integer.parseInt(readToken(pis));
-            int maxVal = Integer.parseInt(readToken(pis));
-            if (maxVal <= 0) throw new IOException("Niepoprawny maxVal");
-
-            BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-            if (ascii) {
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int r = Integer.parseInt(readToken(pis));
-                        int g = Integer.parseInt(readToken(pis));
-                        int b = Integer.parseInt(readToken(pis));
-                        r = scaleTo8Bit(r, maxVal);
-                        g = scaleTo8Bit(g, maxVal);
-                        b = scaleTo8Bit(b, maxVal);
-                        img.setRGB(x, y, (r << 16) | (g << 8) | b);
-                    }
-                }
-            } else {
-                skipWhitespace(pis);
-                int pixelBytes = (maxVal < 256) ? 1 : 2;
-                byte[] row = new byte[width * 3 * pixelBytes];
-
-                for (int y = 0; y < height; y++) {
-                    int read = pis.read(row);
-                    if (read < row.length)
-                        throw new IOException("Nieoczekiwany koniec danych");
-                    int idx = 0;
-                    for (int x = 0; x < width; x++) {
-                        int r, g, b;
-                        if (pixelBytes == 1) {
-                            r = row[idx++] & 0xFF;
-                            g = row[idx++] & 0xFF;
-                            b = row[idx++] & 0xFF;
-                        } else {
-                            r = ((row[idx++] & 0xFF) << 8) | (row[idx++] & 0xFF);
-                            g = ((row[idx++] & 0xFF) << 8) | (row[idx++] & 0xFF);
-                            b = ((row[idx++] & 0xFF) << 8) | (row[idx++] & 0xFF);
-                        }
-                        r = scaleTo8Bit(r, maxVal);
-                        g = scaleTo8Bit(g, maxVal);
-                        b = scaleTo8Bit(b, maxVal);
-                        img.setRGB(x, y, (r << 16) | (g << 8) | b);
-                    }
+    private void transcodeInBackground(File source, File target, float quality) {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                PpmStreamTranscoder.transcode(source, target, quality);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(Main.this, "Zapisano pomyślnie!");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(Main.this, cause.getMessage(), "Błąd zapisu", JOptionPane.ERROR_MESSAGE);
                 }
             }
-            return img;
-        }
+        }.execute();
     }
 
-    private void skipWhitespace(InputStream in) throws IOException {
-        int c;
-        while ((c = in.read()) != -1) {
-            if (!Character.isWhitespace(c)) {
-                if (in instanceof PushbackInputStream)
-                    ((PushbackInputStream) in).unread(c);
-                break;
-            }
+    // Kodowanie w kilku jakościach naraz (w tle), potem tabela rozmiarów i czasów -
+    // wybrany wiersz jest zapisywany z gotowych bajtów, bez ponownego kodowania
+    private void compareJPEGQualities() {
+        if (tiledImage != null) {
+            JOptionPane.showMessageDialog(this, "Porównanie jakości wymaga obrazu w pamięci - użyj konwersji strumieniowej.");
+            return;
         }
+        if (image == null && hdImage == null) return;
+        // Mapowanie tonów obrazu 16-bitowego to przejście po całym obrazie - też w tle
+        BufferedImage eightBit = image;
+        HighDepthImage highDepth = hdImage;
+        long rawBytes = image != null
+                ? (long) image.getWidth() * image.getHeight() * 3
+                : (long) hdImage.getWidth() * hdImage.getHeight() * 3;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<java.util.List<JpegExportService.Result>, Void>() {
+            @Override
+            protected java.util.List<JpegExportService.Result> doInBackground() throws Exception {
+                BufferedImage source = eightBit != null ? eightBit : highDepth.toEightBit();
+                return jpegExport.compare(source, COMPARED_QUALITIES);
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    chooseAndSaveJPEG(get(), rawBytes);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(Main.this, cause.getMessage(), "Błąd zapisu", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
-    private String readToken(InputStream in) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int c;
-        // pomijamy komentarze i białe znaki
-        while (true) {
-            c = in.read();
-            if (c == '#') { // komentarz
-                while (c != '\n' && c != -1) c = in.read();
-            } else if (c == -1) return null;
-            else if (!Character.isWhitespace(c)) break;
+    private void chooseAndSaveJPEG(java.util.List<JpegExportService.Result> results, long rawBytes) throws IOException {
+        String[] columns = {"Jakość", "Rozmiar [KB]", "Kompresja", "Czas [ms]"};
+        Object[][] rows = new Object[results.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            JpegExportService.Result r = results.get(i);
+            rows[i] = new Object[] {
+                    String.format("%.2f", r.quality),
+                    String.format("%.1f", r.size() / 1024.0),
+                    String.format("%.1f : 1", (double) rawBytes / r.size()),
+                    String.format("%.1f", r.encodeNanos / 1e6)
+            };
+        }
+        JTable table = new JTable(rows, columns) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        int defaultRow = -1;
+        for (int i = 0; i < rows.length; i++) {
+            if (defaultRow < 0 || Math.abs(results.get(i).quality - DEFAULT_JPEG_QUALITY)
+                    < Math.abs(results.get(defaultRow).quality - DEFAULT_JPEG_QUALITY)) defaultRow = i;
+        }
+        if (defaultRow >= 0) table.setRowSelectionInterval(defaultRow, defaultRow);
+        JScrollPane pane = new JScrollPane(table);
+        pane.setPreferredSize(new Dimension(420, table.getRowHeight() * (rows.length + 2)));
+        int choice = JOptionPane.showConfirmDialog(this, pane, "Wybierz jakość JPEG",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION || table.getSelectedRow() < 0) return;
+        if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            Files.write(chooser.getSelectedFile().toPath(), results.get(table.getSelectedRow()).data);
+            JOptionPane.showMessageDialog(this, "Zapisano pomyślnie!");
         }
-        sb.append((char) c);
-        while ((c = in.read()) != -1 && !Character.isWhitespace(c))
-            sb.append((char) c);
-        return sb.toString();
     }
 
-    private int scaleTo8Bit(int value, int maxVal) {
-        if (maxVal == 255) return value;
-        return (int) Math.round((value / (double) maxVal) * 255);
+    private float askJPEGQuality() {
+        String q = JOptionPane.showInputDialog(this, "Stopień kompresji (0.1–1.0):", String.valueOf(DEFAULT_JPEG_QUALITY));
+        try {
+            float val = Float.parseFloat(q);
+            return Math.min(1f, Math.max(0.1f, val));
+        } catch (Exception e) {
+            return DEFAULT_JPEG_QUALITY;
+        }
     }
 
     private void saveJPEG(BufferedImage img, File file, float quality) throws IOException {
-        var writers = ImageIO.getImageWritersByFormatName("jpg");
-        if (!writers.hasNext()) throw new IOException("Brak obsługi JPEG!");
-        var writer = writers.next();
-        var ios = ImageIO.createImageOutputStream(file);
-        writer.setOutput(ios);
-        var param = writer.getDefaultWriteParam();
-        param.setCompressionMode(javax.imageio.ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(quality);
-        writer.write(null, new javax.imageio.IIOImage(img, null, null), param);
-        ios.close();
-        writer.dispose();
+        jpegExport.write(img, file, quality);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,162 @@
+package ms.paint;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// --- KLASA POMOCNICZA: RÓWNOLEGŁE PARSOWANIE P3 ---
+// Dane P3 są dzielone na fragmenty zaczynające się zawsze po znaku '\n' - taki punkt nie leży
+// ani w środku liczby, ani w komentarzu. Przebieg 1 (równolegle) liczy liczby w każdym fragmencie,
+// potem granice są przesuwane o 0-2 liczby tak, by każdy fragment zaczynał się od pełnego piksela,
+// a przebieg 2 (równolegle) dekoduje fragmenty od razu w odpowiednie miejsca tablicy pikseli.
+// Każdy fragment jest osobno mapowany do pamięci, więc plik może mieć wiele gigabajtów.
+class ParallelP3Decoder {
+
+    // Poniżej tego rozmiaru danych podział się nie opłaca
+    static final long MIN_PARALLEL_BYTES = 8L << 20;
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    // Górna granica fragmentu - razem z wyszukiwaniem końca wiersza zawsze poniżej 2 GB mapowania
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+    private static final int DECODE_BUFFER_BYTES = 1 << 20;
+
+    private ParallelP3Decoder() {
+    }
+
+    // false, gdy dekodowanie równoległe nie ma sensu lub nie jest możliwe (wtedy zostaje wersja sekwencyjna)
+    static boolean decode(FileChannel channel, PpmReader.Header header, int[] pixels, PpmReader.RowListener listener)
+            throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism < 2 || channel.size() - header.dataOffset < MIN_PARALLEL_BYTES) return false;
+        return decode(channel, header, pixels, listener, parallelism * 4);
+    }
+
+    // Fragmenty kończą się w dowolnej kolejności - listener dostaje wiersze, które fragment (choćby częściowo) wypełnił
+    static boolean decode(FileChannel channel, PpmReader.Header header, int[] pixels, PpmReader.RowListener listener,
+                          int targetChunks) throws IOException {
+        long dataEnd = channel.size();
+        long dataBytes = dataEnd - header.dataOffset;
+        long nominal = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, dataBytes / targetChunks));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(header.dataOffset);
+        for (long pos = header.dataOffset + nominal; pos < dataEnd; ) {
+            long lineStart = nextLineStart(channel, pos, Math.min(dataEnd, pos + nominal));
+            // Bardzo długi wiersz (np. cały plik w jednej linii) - bez bezpiecznego punktu podziału
+            if (lineStart < 0) return false;
+            if (lineStart >= dataEnd) break;
+            bounds.add(lineStart);
+            pos = lineStart + nominal;
+        }
+        bounds.add(dataEnd);
+
+        // Przebieg 1: liczba próbek w każdym fragmencie
+        List<Long> counts = new ArrayList<>();
+        List<Callable<Long>> countTasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            long start = bounds.get(i); long end = bounds.get(i + 1);
+            countTasks.add(() -> new PpmReader.P3Tokenizer(map(channel, start, end), DECODE_BUFFER_BYTES).countRemaining());
+        }
+        counts.addAll(runAll(countTasks));
+
+        alignToPixels(channel, bounds, counts);
+
+        long total = 0;
+        for (long count : counts) total += count;
+        int pixelCount = header.width * header.height;
+        if (total < 3L * pixelCount) throw new EOFException("Nieoczekiwany koniec danych");
+
+        // Przebieg 2: dekodowanie fragmentów w miejsca wynikające z sum prefiksowych
+        int[] lut = PpmReader.p3Lut(header.maxVal);
+        List<Callable<Long>> decodeTasks = new ArrayList<>();
+        long samplesBefore = 0;
+        for (int i = 0; i < counts.size(); i++) {
+            int firstPixel = (int) Math.min(pixelCount, samplesBefore / 3);
+            int chunkPixels = (int) Math.min(counts.get(i) / 3, pixelCount - firstPixel);
+            samplesBefore += counts.get(i);
+            if (chunkPixels <= 0) continue;
+            long start = bounds.get(i); long end = bounds.get(i + 1);
+            decodeTasks.add(() -> {
+                PpmReader.P3Tokenizer tokenizer = new PpmReader.P3Tokenizer(map(channel, start, end), DECODE_BUFFER_BYTES);
+                PpmReader.decodeP3Pixels(tokenizer, lut, pixels, firstPixel, chunkPixels);
+                if (listener != null) {
+                    listener.rowsDecoded(firstPixel / header.width, (firstPixel + chunkPixels - 1) / header.width + 1);
+                }
+                return (long) chunkPixels;
+            });
+        }
+        runAll(decodeTasks);
+        return true;
+    }
+
+    // Przesuwa granice tak, by liczba próbek przed każdym fragmentem była wielokrotnością 3.
+    // Fragment za krótki na przesunięcie jest łączony z poprzednim.
+    private static void alignToPixels(FileChannel channel, List<Long> bounds, List<Long> counts) throws IOException {
+        long samplesBefore = counts.get(0);
+        for (int i = 1; i < counts.size(); ) {
+            int shift = (int) ((3 - samplesBefore % 3) % 3);
+            if (shift > 0 && counts.get(i) <= shift) {
+                counts.set(i - 1, counts.get(i - 1) + counts.remove(i));
+                bounds.remove(i);
+                samplesBefore = 0;
+                for (int j = 0; j < i; j++) samplesBefore += counts.get(j);
+                continue;
+            }
+            if (shift > 0) {
+                PpmReader.P3Tokenizer tokenizer = new PpmReader.P3Tokenizer(map(channel, bounds.get(i), bounds.get(i + 1)), 4096);
+                for (int k = 0; k < shift; k++) tokenizer.nextSample();
+                bounds.set(i, bounds.get(i) + tokenizer.consumed());
+                counts.set(i - 1, counts.get(i - 1) + shift);
+                counts.set(i, counts.get(i) - shift);
+                samplesBefore += shift;
+            }
+            samplesBefore += counts.get(i);
+            i++;
+        }
+    }
+
+    // Pozycja tuż za pierwszym '\n' w [from, limit), albo -1
+    private static long nextLineStart(FileChannel channel, long from, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (long pos = from; pos < limit; ) {
+            buffer.clear();
+            int n = channel.read(buffer, pos);
+            if (n <= 0) return -1;
+            byte[] data = buffer.array();
+            for (int i = 0; i < n && pos + i < limit; i++) {
+                if (data[i] == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return -1;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    private static <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Przerwano wczytywanie");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw new IOException(e.getCause());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,397 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+// --- KLASA POMOCNICZA: ODCZYT PPM (P3/P6) ---
+// Nagłówek jest parsowany bezpośrednio z FileChannel, a dane P6 czytane blokami wielu wierszy
+// do jednego bufora i zamieniane od razu na tablicę int[] z DataBufferInt (bez setRGB).
+// Dla maxVal != 255 skalowanie do 8 bitów idzie przez tablicę LUT liczoną raz na plik.
+// Dane P3 parsuje P3Tokenizer - bez obiektów String na każdą próbkę.
+class PpmReader {
+
+    // Docelowy rozmiar bufora odczytu P6 (zaokrąglany do pełnych wierszy)
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    // Liczba pikseli P3 między kolejnymi powiadomieniami o zdekodowanych wierszach
+    private static final int P3_BAND_PIXELS = 1 << 18;
+
+    // Postęp dekodowania: obraz jest gotowy do wyświetlenia zanim zostanie wypełniony,
+    // potem kolejno zgłaszane są zakresy gotowych wierszy [yStart, yEnd).
+    // rowsDecoded może rzucić CancellationException, żeby przerwać wczytywanie.
+    interface RowListener {
+        void imageCreated(BufferedImage image);
+        void rowsDecoded(int yStart, int yEnd);
+    }
+
+    static final class Header {
+        final boolean ascii;
+        final int width;
+        final int height;
+        final int maxVal;
+        // Pozycja pierwszego bajtu danych obrazu w pliku
+        final long dataOffset;
+
+        Header(boolean ascii, int width, int height, int maxVal, long dataOffset) {
+            this.ascii = ascii;
+            this.width = width;
+            this.height = height;
+            this.maxVal = maxVal;
+            this.dataOffset = dataOffset;
+        }
+
+        int bytesPerSample() {
+            return maxVal < 256 ? 1 : 2;
+        }
+
+        // Długość jednego wiersza P6 w bajtach
+        int rowBytes() {
+            return width * 3 * bytesPerSample();
+        }
+    }
+
+    private PpmReader() {
+    }
+
+    static BufferedImage read(File file) throws IOException {
+        return read(file, null);
+    }
+
+    static BufferedImage read(File file, RowListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            if ((long) header.width * header.height > Integer.MAX_VALUE)
+                throw new IOException("Obraz za duży: " + header.width + "x" + header.height);
+            BufferedImage img = new BufferedImage(header.width, header.height, BufferedImage.TYPE_INT_RGB);
+            int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+            if (listener != null) listener.imageCreated(img);
+            if (header.ascii) {
+                if (!ParallelP3Decoder.decode(channel, header, pixels, listener)) decodeP3(channel, header, pixels, listener);
+            } else {
+                decodeP6(channel, header, pixels, listener);
+            }
+            return img;
+        }
+    }
+
+    // ************************************************************
+    // *** NAGŁÓWEK ***
+    // ************************************************************
+
+    static Header readHeader(FileChannel channel) throws IOException {
+        HeaderScanner scanner = new HeaderScanner(channel);
+        String magic = scanner.token();
+        if (magic == null) throw new IOException("Brak nagłówka");
+        if (!magic.equals("P3") && !magic.equals("P6"))
+            throw new IOException("Nieobsługiwany format: " + magic);
+
+        int width = scanner.positiveInt("szerokość");
+        int height = scanner.positiveInt("wysokość");
+        int maxVal = scanner.positiveInt("maxVal");
+        if (maxVal > 65535) throw new IOException("Niepoprawny maxVal");
+
+        // Po maxVal jest dokładnie jeden biały znak, potem dane (token() już go zjadł)
+        return new Header(magic.equals("P3"), width, height, maxVal, scanner.position());
+    }
+
+    // Czytnik tokenów nagłówka z kanału, z pominięciem komentarzy '#'
+    private static final class HeaderScanner {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private long position;
+
+        HeaderScanner(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.position = channel.position();
+            buffer.limit(0);
+        }
+
+        long position() {
+            return position;
+        }
+
+        private int next() throws IOException {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                buffer.flip();
+                if (n <= 0) return -1;
+            }
+            position++;
+            return buffer.get() & 0xFF;
+        }
+
+        String token() throws IOException {
+            int c;
+            while (true) {
+                c = next();
+                if (c == '#') { // komentarz
+                    while (c != '\n' && c != '\r' && c != -1) c = next();
+                } else if (c == -1) return null;
+                else if (!Character.isWhitespace(c)) break;
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append((char) c);
+            while ((c = next()) != -1 && !Character.isWhitespace(c))
+                sb.append((char) c);
+            return sb.toString();
+        }
+
+        int positiveInt(String name) throws IOException {
+            String token = token();
+            if (token == null) throw new IOException("Niepełny nagłówek: brak pola " + name);
+            try {
+                int value = Integer.parseInt(token);
+                if (value <= 0) throw new IOException("Niepoprawne pole " + name + ": " + token);
+                return value;
+            } catch (NumberFormatException e) {
+                throw new IOException("Niepoprawne pole " + name + ": " + token);
+            }
+        }
+    }
+
+    // ************************************************************
+    // *** DANE P6 (binarne) ***
+    // ************************************************************
+
+    private static void decodeP6(FileChannel channel, Header header, int[] pixels, RowListener listener) throws IOException {
+        int rowBytes = header.rowBytes();
+        int rowsPerRead = Math.max(1, READ_BUFFER_BYTES / rowBytes);
+        ByteBuffer buffer = ByteBuffer.allocate(rowsPerRead * rowBytes);
+        byte[] data = buffer.array();
+        int[] lut = header.maxVal == 255 ? null : scaleLut(header.maxVal);
+
+        channel.position(header.dataOffset);
+        for (int y = 0; y < header.height; y += rowsPerRead) {
+            int rows = Math.min(rowsPerRead, header.height - y);
+            buffer.clear().limit(rows * rowBytes);
+            readFully(channel, buffer);
+            decodeP6Rows(data, pixels, y * header.width, rows * header.width, header.bytesPerSample(), lut);
+            if (listener != null) listener.rowsDecoded(y, y + rows);
+        }
+    }
+
+    // Zamiana count pikseli z bajtów P6 na int RGB, od indeksu offset w tablicy pikseli
+    static void decodeP6Rows(byte[] data, int[] pixels, int offset, int count, int bytesPerSample, int[] lut) {
+        int end = offset + count;
+        if (bytesPerSample == 1) {
+            if (lut == null) {
+                for (int i = offset, idx = 0; i < end; i++, idx += 3) {
+                    pixels[i] = ((data[idx] & 0xFF) << 16) | ((data[idx + 1] & 0xFF) << 8) | (data[idx + 2] & 0xFF);
+                }
+            } else {
+                for (int i = offset, idx = 0; i < end; i++, idx += 3) {
+                    pixels[i] = (lut[data[idx] & 0xFF] << 16) | (lut[data[idx + 1] & 0xFF] << 8) | lut[data[idx + 2] & 0xFF];
+                }
+            }
+        } else {
+            // Próbki 16-bitowe big-endian; LUT zawsze potrzebny (maxVal >= 256)
+            for (int i = offset, idx = 0; i < end; i++, idx += 6) {
+                int r = ((data[idx] & 0xFF) << 8) | (data[idx + 1] & 0xFF);
+                int g = ((data[idx + 2] & 0xFF) << 8) | (data[idx + 3] & 0xFF);
+                int b = ((data[idx + 4] & 0xFF) << 8) | (data[idx + 5] & 0xFF);
+                pixels[i] = (lut[r] << 16) | (lut[g] << 8) | lut[b];
+            }
+        }
+    }
+
+    // Tablica value -> 0..255 dla wszystkich możliwych wartości próbki (0..65535).
+    // Wartości powyżej maxVal (uszkodzony plik) są przycinane do 255.
+    static int[] scaleLut(int maxVal) {
+        int size = maxVal < 256 ? 256 : 65536;
+        int[] lut = new int[size];
+        for (int v = 0; v < size; v++) {
+            lut[v] = scaleTo8Bit(Math.min(v, maxVal), maxVal);
+        }
+        return lut;
+    }
+
+    static int scaleTo8Bit(int value, int maxVal) {
+        if (maxVal == 255) return value;
+        return (int) Math.round((value / (double) maxVal) * 255);
+    }
+
+    // FileChannel.read może zwrócić mniej bajtów niż miejsca w buforze - czytamy do skutku
+    static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Nieoczekiwany koniec danych");
+        }
+    }
+
+    // ************************************************************
+    // *** DANE P3 (tekstowe) ***
+    // ************************************************************
+
+    private static void decodeP3(FileChannel channel, Header header, int[] pixels, RowListener listener) throws IOException {
+        channel.position(header.dataOffset);
+        P3Tokenizer tokenizer = new P3Tokenizer(channel, READ_BUFFER_BYTES);
+        int[] lut = p3Lut(header.maxVal);
+        int width = header.width;
+        int rowsPerBand = Math.max(1, P3_BAND_PIXELS / width);
+        for (int y = 0; y < header.height; y += rowsPerBand) {
+            int rows = Math.min(rowsPerBand, header.height - y);
+            decodeP3Pixels(tokenizer, lut, pixels, y * width, rows * width);
+            if (listener != null) listener.rowsDecoded(y, y + rows);
+        }
+    }
+
+    // count kolejnych pikseli z tokenizera do tablicy od indeksu offset
+    static void decodeP3Pixels(P3Tokenizer tokenizer, int[] lut, int[] pixels, int offset, int count) throws IOException {
+        int last = lut.length - 1;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int r = lut[Math.min(tokenizer.nextSample(), last)];
+            int g = lut[Math.min(tokenizer.nextSample(), last)];
+            int b = lut[Math.min(tokenizer.nextSample(), last)];
+            pixels[i] = (r << 16) | (g << 8) | b;
+        }
+    }
+
+    // Dla P3 LUT jest zawsze (także przy maxVal == 255), bo przycina wartości spoza zakresu
+    static int[] p3Lut(int maxVal) {
+        if (maxVal != 255) return scaleLut(maxVal);
+        int[] lut = new int[256];
+        for (int v = 0; v < 256; v++) lut[v] = v;
+        return lut;
+    }
+
+    // Tokenizer liczb P3 bez alokacji: skanuje duży bufor bajtów, cyfry składa od razu w int,
+    // komentarze '#' pomija w miejscu. Wartości większe niż 65535 są obcinane (i tak wykraczają poza maxVal).
+    // Źródłem jest kanał albo gotowy bufor (np. zmapowany fragment pliku), kopiowany porcjami do data.
+    static final class P3Tokenizer {
+        private static final int MAX_SAMPLE = 65535;
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer source;
+        private final ByteBuffer buffer;
+        private final byte[] data;
+        private int pos;
+        private int limit;
+        // Bajty źródła wczytane przed bieżącą zawartością bufora
+        private long filledBefore;
+
+        P3Tokenizer(ReadableByteChannel channel, int bufferSize) {
+            this(channel, null, bufferSize);
+        }
+
+        P3Tokenizer(ByteBuffer source, int bufferSize) {
+            this(null, source, bufferSize);
+        }
+
+        private P3Tokenizer(ReadableByteChannel channel, ByteBuffer source, int bufferSize) {
+            this.channel = channel;
+            this.source = source;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.data = buffer.array();
+        }
+
+        // Liczba bajtów źródła zużytych do tej pory
+        long consumed() {
+            return filledBefore + pos;
+        }
+
+        // Liczba pozostałych liczb do końca źródła, bez ich parsowania (komentarze pominięte)
+        long countRemaining() throws IOException {
+            long count = 0;
+            boolean inToken = false;
+            while (pos < limit || fill()) {
+                byte[] data = this.data;
+                int p = pos;
+                int end = limit;
+                while (p < end) {
+                    int c = data[p++];
+                    if (c == '#') {
+                        pos = p;
+                        skipComment();
+                        p = pos; end = limit;
+                        inToken = false;
+                    } else if (isWhitespace(c)) {
+                        inToken = false;
+                    } else if (!inToken) {
+                        inToken = true;
+                        count++;
+                    }
+                }
+                pos = p;
+            }
+            return count;
+        }
+
+        int nextSample() throws IOException {
+            // pos/limit w zmiennych lokalnych - zapis do pól tylko przy dociąganiu bufora i na końcu
+            byte[] data = this.data;
+            int p = pos;
+            int end = limit;
+            int c;
+            // Białe znaki i komentarze przed liczbą
+            while (true) {
+                if (p == end) {
+                    if (!fill()) throw new EOFException("Nieoczekiwany koniec danych");
+                    p = 0; end = limit;
+                }
+                c = data[p++];
+                if (c == '#') {
+                    pos = p;
+                    skipComment();
+                    p = pos; end = limit;
+                } else if (!isWhitespace(c)) {
+                    break;
+                }
+            }
+            int value = 0;
+            while (true) {
+                int digit = c - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IOException("Niepoprawna wartość w danych P3: znak '" + (char) (c & 0xFF) + "'");
+                }
+                value = value * 10 + digit;
+                if (value > MAX_SAMPLE) value = MAX_SAMPLE + 1;
+                if (p == end) {
+                    if (!fill()) return value;
+                    p = 0; end = limit;
+                }
+                c = data[p];
+                if (isWhitespace(c) || c == '#') {
+                    pos = p;
+                    return value;
+                }
+                p++;
+            }
+        }
+
+        private void skipComment() throws IOException {
+            while (true) {
+                if (pos == limit && !fill()) return;
+                byte c = data[pos++];
+                if (c == '\n' || c == '\r') return;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            filledBefore += limit;
+            int n;
+            if (source != null) {
+                n = Math.min(data.length, source.remaining());
+                source.get(data, 0, n);
+                if (n == 0) n = -1;
+            } else {
+                buffer.clear();
+                do {
+                    n = channel.read(buffer);
+                } while (n == 0);
+            }
+            pos = 0;
+            limit = Math.max(0, n);
+            return n > 0;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || (c >= '\t' && c <= '\r');
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package ms.paint;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Vector;
+
+/**
+ * Konwersja PPM (P3/P6) do JPEG bez wczytywania całego obrazu do pamięci.
+ *
+ * Użycie:
+ *   java ms.paint.PpmStreamTranscoder [--quality 0.9] wejście.ppm wyjście.jpg
+ *   java ms.paint.PpmStreamTranscoder [--quality 0.9] katalog_ppm katalog_jpg
+ *
+ * ImageWriter dostaje RenderedImage podzielony na pasy wierszy. Writer JPEG pobiera z niego
+ * jeden Raster (getData()), którego DataBuffer dekoduje pasy z pliku dopiero przy odczycie
+ * i trzyma w pamięci tylko bieżący - szczytowe zużycie sterty zależy od rozmiaru pasa, nie obrazu.
+ */
+public class PpmStreamTranscoder {
+
+    // Docelowy rozmiar jednego pasa w bajtach (int na piksel)
+    private static final int STRIP_BYTES = 4 << 20;
+    private static final int[] RGB_MASKS = {0xFF0000, 0xFF00, 0xFF};
+
+    private PpmStreamTranscoder() {
+    }
+
+    public static void main(String[] args) {
+        float quality = 0.9f;
+        int i = 0;
+        if (args.length > 0 && args[0].equals("--quality")) {
+            if (args.length < 2) { printUsage(); System.exit(2); return; }
+            try {
+                quality = Math.min(1f, Math.max(0.1f, Float.parseFloat(args[1])));
+            } catch (NumberFormatException e) {
+                printUsage(); System.exit(2); return;
+            }
+            i = 2;
+        }
+        if (args.length - i != 2) { printUsage(); System.exit(2); return; }
+        File input = new File(args[i]);
+        File output = new File(args[i + 1]);
+
+        File[] inputs;
+        if (input.isDirectory()) {
+            if (!output.isDirectory() && !output.mkdirs()) {
+                System.err.println("Nie można utworzyć katalogu wyjściowego: " + output);
+                System.exit(2);
+                return;
+            }
+            inputs = input.listFiles(f -> f.isFile() && f.getName().toLowerCase(Locale.ROOT).endsWith(".ppm"));
+            if (inputs == null) inputs = new File[0];
+            Arrays.sort(inputs);
+        } else {
+            inputs = new File[] { input };
+        }
+
+        int failed = 0;
+        for (File source : inputs) {
+            File target = input.isDirectory() ? new File(output, baseName(source) + ".jpg") : output;
+            long start = System.nanoTime();
+            try {
+                transcode(source, target, quality);
+                System.out.printf(Locale.ROOT, "%s -> %s (%.2f s)%n", source.getName(), target.getName(),
+                        (System.nanoTime() - start) / 1e9);
+            } catch (IOException e) {
+                failed++;
+                System.err.println("Błąd konwersji " + source.getName() + ": " + e.getMessage());
+            }
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    static void transcode(File ppm, File jpeg, float quality) throws IOException {
+        try (StripImage image = StripImage.open(ppm)) {
+            var writers = ImageIO.getImageWritersByFormatName("jpg");
+            if (!writers.hasNext()) throw new IOException("Brak obsługi JPEG!");
+            ImageWriter writer = writers.next();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(jpeg)) {
+                if (ios == null) throw new IOException("Nie można zapisać pliku: " + jpeg);
+                writer.setOutput(ios);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } catch (UncheckedIOException e) {
+                // Błąd odczytu PPM zgłoszony z wnętrza DataBuffera
+                throw e.getCause();
+            } finally {
+                writer.dispose();
+            }
+        }
+    }
+
+    private static String baseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static void printUsage() {
+        System.err.println("Użycie: java ms.paint.PpmStreamTranscoder [--quality 0.1-1.0] WEJŚCIE.ppm WYJŚCIE.jpg");
+        System.err.println("        java ms.paint.PpmStreamTranscoder [--quality 0.1-1.0] KATALOG_PPM KATALOG_JPG");
+    }
+
+    // ************************************************************
+    // *** ŹRÓDŁA WIERSZY ***
+    // ************************************************************
+
+    // Dekoduje rows wierszy od y do dst (TYPE_INT_RGB, bez odstępów między wierszami)
+    interface RowSource extends Closeable {
+        void readRows(int y, int rows, int[] dst) throws IOException;
+    }
+
+    // P6: dowolny wiersz jest pod znanym przesunięciem w pliku
+    private static final class P6RowSource implements RowSource {
+        private final FileChannel channel;
+        private final PpmReader.Header header;
+        private final int[] lut;
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        P6RowSource(FileChannel channel, PpmReader.Header header) {
+            this.channel = channel;
+            this.header = header;
+            this.lut = header.maxVal == 255 ? null : PpmReader.scaleLut(header.maxVal);
+        }
+
+        @Override
+        public void readRows(int y, int rows, int[] dst) throws IOException {
+            int bytes = rows * header.rowBytes();
+            if (buffer.capacity() < bytes) buffer = ByteBuffer.allocate(bytes);
+            buffer.clear().limit(bytes);
+            channel.position(header.dataOffset + (long) y * header.rowBytes());
+            PpmReader.readFully(channel, buffer);
+            PpmReader.decodeP6Rows(buffer.array(), dst, 0, rows * header.width, header.bytesPerSample(), lut);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // P3: tylko odczyt sekwencyjny - cofnięcie się zaczyna parsowanie od początku danych
+    private static final class P3RowSource implements RowSource {
+        private final FileChannel channel;
+        private final PpmReader.Header header;
+        private final int[] lut;
+        private PpmReader.P3Tokenizer tokenizer;
+        private int nextRow;
+
+        P3RowSource(FileChannel channel, PpmReader.Header header) {
+            this.channel = channel;
+            this.header = header;
+            this.lut = PpmReader.p3Lut(header.maxVal);
+        }
+
+        @Override
+        public void readRows(int y, int rows, int[] dst) throws IOException {
+            if (tokenizer == null || y < nextRow) {
+                channel.position(header.dataOffset);
+                tokenizer = new PpmReader.P3Tokenizer(channel, 1 << 20);
+                nextRow = 0;
+            }
+            while (nextRow < y) {
+                int skip = Math.min(rows, y - nextRow);
+                PpmReader.decodeP3Pixels(tokenizer, lut, dst, 0, skip * header.width);
+                nextRow += skip;
+            }
+            PpmReader.decodeP3Pixels(tokenizer, lut, dst, 0, rows * header.width);
+            nextRow += rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // ************************************************************
+    // *** OBRAZ PODZIELONY NA PASY ***
+    // ************************************************************
+
+    static final class StripImage implements RenderedImage, Closeable {
+        private final RowSource source;
+        private final int width;
+        private final int height;
+        private final int stripRows;
+        private final ColorModel colorModel = new DirectColorModel(24, RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]);
+
+        private StripImage(RowSource source, int width, int height) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.stripRows = Math.max(1, Math.min(height, STRIP_BYTES / 4 / width));
+        }
+
+        static StripImage open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                PpmReader.Header header = PpmReader.readHeader(channel);
+                if ((long) header.width * header.height > Integer.MAX_VALUE)
+                    throw new IOException("Obraz za duży: " + header.width + "x" + header.height);
+                if (header.width > 65535 || header.height > 65535)
+                    throw new IOException("JPEG obsługuje najwyżej 65535 pikseli w każdym wymiarze");
+                RowSource source = header.ascii ? new P3RowSource(channel, header) : new P6RowSource(channel, header);
+                return new StripImage(source, header.width, header.height);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override public int getWidth() { return width; }
+        @Override public int getHeight() { return height; }
+        @Override public int getMinX() { return 0; }
+        @Override public int getMinY() { return 0; }
+        @Override public int getNumXTiles() { return 1; }
+        @Override public int getNumYTiles() { return (height + stripRows - 1) / stripRows; }
+        @Override public int getMinTileX() { return 0; }
+        @Override public int getMinTileY() { return 0; }
+        @Override public int getTileWidth() { return width; }
+        @Override public int getTileHeight() { return stripRows; }
+        @Override public int getTileGridXOffset() { return 0; }
+        @Override public int getTileGridYOffset() { return 0; }
+        @Override public ColorModel getColorModel() { return colorModel; }
+        @Override public SampleModel getSampleModel() {
+            return new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, stripRows, RGB_MASKS);
+        }
+        @Override public Vector<RenderedImage> getSources() { return null; }
+        @Override public Object getProperty(String name) { return java.awt.Image.UndefinedProperty; }
+        @Override public String[] getPropertyNames() { return null; }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            int y0 = tileY * stripRows;
+            return getData(new Rectangle(0, y0, width, Math.min(stripRows, height - y0)));
+        }
+
+        // Cały obraz jako Raster z leniwym DataBufferem - tej ścieżki używa writer JPEG
+        @Override
+        public Raster getData() {
+            SampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, RGB_MASKS);
+            return Raster.createRaster(model, new StripDataBuffer(), new Point(0, 0));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            WritableRaster raster = Raster.createPackedRaster(DataBuffer.TYPE_INT, rect.width, rect.height,
+                    RGB_MASKS, new Point(rect.x, rect.y));
+            return copyData(raster);
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) raster = getColorModel().createCompatibleWritableRaster(width, height);
+            Rectangle rect = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+            int[] rows = new int[stripRows * width];
+            try {
+                for (int y = rect.y; y < rect.y + rect.height; y += stripRows) {
+                    int count = Math.min(stripRows, rect.y + rect.height - y);
+                    source.readRows(y, count, rows);
+                    for (int j = 0; j < count; j++) {
+                        raster.setDataElements(rect.x, y + j, rect.width, 1,
+                                Arrays.copyOfRange(rows, j * width + rect.x, j * width + rect.x + rect.width));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return raster;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        // Tylko do odczytu; trzyma jeden pas i dekoduje kolejny, gdy indeks wyjdzie poza bieżący
+        private final class StripDataBuffer extends DataBuffer {
+            private final int[] strip = new int[stripRows * width];
+            private int stripStart;
+            private int stripEnd;
+
+            StripDataBuffer() {
+                super(DataBuffer.TYPE_INT, width * height);
+            }
+
+            @Override
+            public int getElem(int bank, int i) {
+                if (i < stripStart || i >= stripEnd) loadStrip(i / width / stripRows);
+                return strip[i - stripStart];
+            }
+
+            @Override
+            public void setElem(int bank, int i, int val) {
+                throw new UnsupportedOperationException("Bufor pasów jest tylko do odczytu");
+            }
+
+            private void loadStrip(int index) {
+                int y0 = index * stripRows;
+                int rows = Math.min(stripRows, height - y0);
+                try {
+                    source.readRows(y0, rows, strip);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                stripStart = y0 * width;
+                stripEnd = stripStart + rows * width;
+            }
+        }
+    }
+}
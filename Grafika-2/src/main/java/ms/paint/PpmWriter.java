@@ -0,0 +1,87 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// --- KLASA POMOCNICZA: ZAPIS PPM (P6) ---
+// Wiersze są pakowane do jednego bufora (~1 MB) i zapisywane przez FileChannel w całości.
+// Obraz 8-bitowy daje maxVal 255; HighDepthImage zapisuje swoje próbki 16-bitowe bez przeliczania.
+class PpmWriter {
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private PpmWriter() {
+    }
+
+    static void writeP6(BufferedImage image, File file) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rowBytes = width * 3;
+        int rowsPerWrite = Math.max(1, WRITE_BUFFER_BYTES / rowBytes);
+        ByteBuffer buffer = ByteBuffer.allocate(rowsPerWrite * rowBytes);
+        byte[] data = buffer.array();
+        // TYPE_INT_RGB / TYPE_INT_ARGB - piksele prosto z rastra, inne typy przez getRGB
+        int[] raster = image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB
+                ? ((DataBufferInt) image.getRaster().getDataBuffer()).getData() : null;
+        int[] rows = raster == null ? new int[rowsPerWrite * width] : null;
+
+        try (FileChannel channel = openForWrite(file)) {
+            writeHeader(channel, width, height, 255);
+            for (int y = 0; y < height; y += rowsPerWrite) {
+                int count = Math.min(rowsPerWrite, height - y);
+                int[] src = raster;
+                int offset = y * width;
+                if (src == null) {
+                    image.getRGB(0, y, width, count, rows, 0, width);
+                    src = rows;
+                    offset = 0;
+                }
+                for (int i = offset, end = offset + count * width, b = 0; i < end; i++, b += 3) {
+                    int rgb = src[i];
+                    data[b] = (byte) (rgb >> 16); data[b + 1] = (byte) (rgb >> 8); data[b + 2] = (byte) rgb;
+                }
+                buffer.clear().limit(count * rowBytes);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    static void writeP6(HighDepthImage image, File file) throws IOException {
+        short[] samples = image.getSamples();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        try (FileChannel channel = openForWrite(file)) {
+            writeHeader(channel, image.getWidth(), image.getHeight(), image.getMaxVal());
+            for (int offset = 0; offset < samples.length; ) {
+                int count = Math.min(WRITE_BUFFER_BYTES / 2, samples.length - offset);
+                buffer.clear();
+                // Big-endian, tak jak wymaga P6
+                buffer.asShortBuffer().put(samples, offset, count);
+                buffer.limit(count * 2);
+                writeFully(channel, buffer);
+                offset += count;
+            }
+        }
+    }
+
+    private static FileChannel openForWrite(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void writeHeader(FileChannel channel, int width, int height, int maxVal) throws IOException {
+        byte[] header = ("P6\n" + width + " " + height + "\n" + maxVal + "\n").getBytes(StandardCharsets.US_ASCII);
+        writeFully(channel, ByteBuffer.wrap(header));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
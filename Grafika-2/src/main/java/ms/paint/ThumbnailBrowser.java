@@ -0,0 +1,153 @@
+package ms.paint;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// --- KLASA POMOCNICZA: PRZEGLĄDARKA MINIATUR KATALOGU ---
+// Miniatury PPM i JPEG powstają na stałej puli kilku wątków (nie więcej niż rdzeni, najwyżej 4)
+// i trafiają do listy, gdy tylko są gotowe. Najpierw sprawdzany jest dyskowy indeks miniatur -
+// trafienie to tylko odczyt kilku KB i dekodowanie małego JPEG. Podwójne kliknięcie otwiera plik.
+// Indeks jest współdzielony przez wszystkie okna (null = bez indeksu), dlatego zamknięcie okna
+// nie przerywa wątków (przerwanie zamknęłoby FileChannel indeksu) - tylko odrzuca kolejkę zadań.
+class ThumbnailBrowser extends JDialog {
+
+    static final int THUMB_SIZE = 128;
+    private static final float THUMB_QUALITY = 0.85f;
+    private static final Icon PLACEHOLDER = new EmptyIcon(THUMB_SIZE);
+
+    private final JpegExportService jpegExport;
+    private final ThumbnailCache cache;
+    private final ThreadPoolExecutor workers;
+    private final Map<File, Icon> icons = new ConcurrentHashMap<>();
+    private final DefaultListModel<File> model = new DefaultListModel<>();
+    private final JList<File> list = new JList<>(model);
+
+    ThumbnailBrowser(Frame owner, File directory, ThumbnailCache cache, JpegExportService jpegExport,
+                     Consumer<File> opener) {
+        super(owner, "Miniatury: " + directory.getPath(), false);
+        this.jpegExport = jpegExport;
+        this.cache = cache;
+
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "miniatury");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(THUMB_SIZE + 16);
+        list.setFixedCellHeight(THUMB_SIZE + 32);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                File f = (File) value;
+                super.getListCellRendererComponent(l, f.getName(), index, isSelected, cellHasFocus);
+                setIcon(icons.getOrDefault(f, PLACEHOLDER));
+                setHorizontalTextPosition(CENTER);
+                setVerticalTextPosition(BOTTOM);
+                setHorizontalAlignment(CENTER);
+                setToolTipText(f.getPath());
+                return this;
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && list.getSelectedValue() != null) opener.accept(list.getSelectedValue());
+            }
+        });
+
+        add(new JScrollPane(list), BorderLayout.CENTER);
+        setSize(900, 600);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                workers.getQueue().clear();
+                workers.shutdown();
+            }
+        });
+
+        File[] files = directory.listFiles(f -> f.isFile() && Thumbnails.isSupported(f));
+        if (files == null) files = new File[0];
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; i++) {
+            File f = files[i];
+            int index = i;
+            model.addElement(f);
+            workers.submit(() -> loadThumbnail(f, index));
+        }
+    }
+
+    private void loadThumbnail(File file, int index) {
+        BufferedImage thumb = readCached(file);
+        try {
+            if (thumb == null) {
+                thumb = Thumbnails.decode(file, THUMB_SIZE);
+                if (cache != null) cache.put(file, jpegExport.encode(thumb, THUMB_QUALITY));
+            }
+        } catch (Exception e) {
+            // Uszkodzony plik zostaje z pustą ramką
+        }
+        if (thumb == null || workers.isShutdown()) return;
+        Icon icon = new ImageIcon(thumb);
+        SwingUtilities.invokeLater(() -> {
+            icons.put(file, icon);
+            Rectangle cell = list.getCellBounds(index, index);
+            if (cell != null) list.repaint(cell);
+        });
+    }
+
+    // Miniatura z indeksu albo null (brak, nieaktualna lub nieczytelna - wtedy dekodujemy od nowa)
+    private BufferedImage readCached(File file) {
+        if (cache == null) return null;
+        try {
+            byte[] cached = cache.get(file);
+            return cached != null ? ImageIO.read(new ByteArrayInputStream(cached)) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Pusta ramka o rozmiarze miniatury, zanim ta zostanie zdekodowana
+    private static final class EmptyIcon implements Icon {
+        private final int size;
+
+        EmptyIcon(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawRect(x, y, size - 1, size - 1);
+        }
+
+        @Override
+        public int getIconWidth() { return size; }
+
+        @Override
+        public int getIconHeight() { return size; }
+    }
+}
@@ -0,0 +1,182 @@
+package ms.paint;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// --- KLASA POMOCNICZA: DYSKOWY INDEKS MINIATUR ---
+// Jeden plik dopisywany na końcu, rekord za rekordem:
+//   [short długość ścieżki][ścieżka UTF-8][long mtime][long rozmiar][int n][n bajtów miniatury (JPEG)]
+// Przy otwarciu czytane są tylko nagłówki rekordów (bajty miniatur są przeskakiwane), więc nawet
+// kilka tysięcy wpisów ładuje się natychmiast. Miniatura jest ważna, gdy mtime i rozmiar pliku
+// się zgadzają; nowszy rekord tej samej ścieżki zastępuje starszy, a gdy nieaktualne rekordy
+// zajmują więcej niż aktualne, plik jest przepisywany (kompaktowanie).
+class ThumbnailCache implements Closeable {
+
+    private static final int MAGIC = 0x47544831; // "GTH1"
+    private static final long COMPACT_MIN_BYTES = 1L << 20;
+
+    private static final class Entry {
+        final long mtime;
+        final long size;
+        final long offset;
+        final int length;
+
+        Entry(long mtime, long size, long offset, int length) {
+            this.mtime = mtime;
+            this.size = size;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private FileChannel channel;
+
+    private ThumbnailCache(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    // Domyślna lokalizacja: -Dgrafika.thumbs.dir albo ~/.grafika-thumbs
+    static File defaultIndexFile() {
+        String dir = System.getProperty("grafika.thumbs.dir",
+                new File(System.getProperty("user.home"), ".grafika-thumbs").getPath());
+        return new File(dir, "index.bin");
+    }
+
+    static ThumbnailCache open(File indexFile) throws IOException {
+        File dir = indexFile.getAbsoluteFile().getParentFile();
+        if (dir != null) Files.createDirectories(dir.toPath());
+        ThumbnailCache cache = new ThumbnailCache(indexFile);
+        long deadBytes = cache.load();
+        cache.channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = cache.endOfRecords();
+        if (cache.channel.size() == 0) {
+            cache.channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC), 0);
+        } else if (cache.channel.size() > validEnd) {
+            // Urwany ostatni rekord (np. przerwany zapis) - odcinamy
+            cache.channel.truncate(validEnd);
+        }
+        if (deadBytes > COMPACT_MIN_BYTES && deadBytes > cache.channel.size() - deadBytes) cache.compact();
+        return cache;
+    }
+
+    // Zwraca liczbę bajtów zajętych przez nieaktualne rekordy
+    private long load() throws IOException {
+        if (!indexFile.isFile() || indexFile.length() < 4) return 0;
+        long deadBytes = 0;
+        long fileLength = indexFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("Nieznany format indeksu miniatur: " + indexFile);
+            long offset = 4;
+            while (true) {
+                try {
+                    int pathLength = in.readUnsignedShort();
+                    byte[] path = new byte[pathLength];
+                    in.readFully(path);
+                    long mtime = in.readLong();
+                    long size = in.readLong();
+                    int length = in.readInt();
+                    long dataOffset = offset + 2 + pathLength + 20;
+                    // skip() na FileInputStream nie zgłasza końca pliku - urwany rekord sprawdzamy sami
+                    if (length < 0 || dataOffset + length > fileLength) break;
+                    in.skipNBytes(length);
+                    Entry old = entries.put(new String(path, StandardCharsets.UTF_8),
+                            new Entry(mtime, size, dataOffset, length));
+                    if (old != null) deadBytes += recordBytes(pathLength, old.length);
+                    offset = dataOffset + length;
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return deadBytes;
+    }
+
+    private long endOfRecords() {
+        long end = 4;
+        for (Entry e : entries.values()) end = Math.max(end, e.offset + e.length);
+        return end;
+    }
+
+    private static long recordBytes(int pathLength, int dataLength) {
+        return 2 + pathLength + 20 + dataLength;
+    }
+
+    // Bajty miniatury albo null, gdy brak wpisu lub plik zmienił się od zapisu
+    synchronized byte[] get(File file) throws IOException {
+        Entry e = entries.get(file.getAbsolutePath());
+        if (e == null || e.mtime != file.lastModified() || e.size != file.length()) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(e.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, e.offset + buffer.position()) < 0) return null;
+        }
+        return buffer.array();
+    }
+
+    synchronized void put(File file, byte[] data) throws IOException {
+        String key = file.getAbsolutePath();
+        append(channel, key, file.lastModified(), file.length(), data, entries);
+    }
+
+    // Rekord zapisany jednym buforem na końcu pliku; wpis w mapie wskazuje jego dane
+    private static void append(FileChannel channel, String key, long mtime, long size, byte[] data,
+                               Map<String, Entry> target) throws IOException {
+        byte[] path = key.getBytes(StandardCharsets.UTF_8);
+        if (path.length > 0xFFFF) return;
+        ByteBuffer record = ByteBuffer.allocate((int) recordBytes(path.length, data.length));
+        record.putShort((short) path.length).put(path).putLong(mtime).putLong(size).putInt(data.length).put(data);
+        record.flip();
+        long start = channel.size();
+        while (record.hasRemaining()) {
+            channel.write(record, start + record.position());
+        }
+        target.put(key, new Entry(mtime, size, start + recordBytes(path.length, 0), data.length));
+    }
+
+    // Przepisanie samych aktualnych rekordów do pliku tymczasowego i podmiana
+    private void compact() throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        Map<String, Entry> compacted = new HashMap<>();
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                ByteBuffer data = ByteBuffer.allocate(entry.length);
+                while (data.hasRemaining()) {
+                    if (channel.read(data, entry.offset + data.position()) < 0) throw new EOFException();
+                }
+                append(out, e.getKey(), entry.mtime, entry.size, data.array(), compacted);
+            }
+        }
+        channel.close();
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        entries.clear();
+        entries.putAll(compacted);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,104 @@
+package ms.paint;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+// --- KLASA POMOCNICZA: MINIATURY PPM / JPEG DEKODOWANE Z PODPRÓBKOWANIEM ---
+// Krok step = ceil(max(w, h) / size) - brany jest co step-ty wiersz i co step-ta kolumna,
+// więc miniatura mieści się w size x size bez dodatkowego skalowania.
+// P6: czytane są tylko wybrane wiersze (odczyt pozycyjny). P3 trzeba przejść całe (tekst nie ma
+// stałej szerokości wiersza), ale dekodowany jest jeden wiersz naraz, bez rastra całego obrazu.
+// JPEG: podpróbkowanie wykonuje sam ImageReader (setSourceSubsampling).
+class Thumbnails {
+
+    private Thumbnails() {
+    }
+
+    static BufferedImage decode(File file, int size) throws IOException {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".ppm")) return decodePpm(file, size);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return decodeJpeg(file, size);
+        throw new IOException("Nieobsługiwany format pliku!");
+    }
+
+    static boolean isSupported(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".ppm") || name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    private static int stepFor(int width, int height, int size) {
+        return Math.max(1, (Math.max(width, height) + size - 1) / size);
+    }
+
+    private static BufferedImage decodePpm(File file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            PpmReader.Header header = PpmReader.readHeader(channel);
+            int step = stepFor(header.width, header.height, size);
+            int tw = (header.width + step - 1) / step;
+            int th = (header.height + step - 1) / step;
+            BufferedImage thumb = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+            int[] dst = ((DataBufferInt) thumb.getRaster().getDataBuffer()).getData();
+            int[] row = new int[header.width];
+
+            if (header.ascii) {
+                channel.position(header.dataOffset);
+                PpmReader.P3Tokenizer tokenizer = new PpmReader.P3Tokenizer(channel, 1 << 16);
+                int[] lut = PpmReader.p3Lut(header.maxVal);
+                for (int y = 0, ty = 0; ty < th; y++) {
+                    PpmReader.decodeP3Pixels(tokenizer, lut, row, 0, header.width);
+                    if (y % step == 0) copySampled(row, step, dst, ty++ * tw, tw);
+                }
+            } else {
+                int rowBytes = header.rowBytes();
+                ByteBuffer buffer = ByteBuffer.allocate(rowBytes);
+                int[] lut = header.maxVal == 255 ? null : PpmReader.scaleLut(header.maxVal);
+                for (int ty = 0; ty < th; ty++) {
+                    long pos = header.dataOffset + (long) ty * step * rowBytes;
+                    buffer.clear();
+                    while (buffer.hasRemaining()) {
+                        int n = channel.read(buffer, pos + buffer.position());
+                        if (n < 0) throw new EOFException("Nieoczekiwany koniec danych");
+                    }
+                    PpmReader.decodeP6Rows(buffer.array(), row, 0, header.width, header.bytesPerSample(), lut);
+                    copySampled(row, step, dst, ty * tw, tw);
+                }
+            }
+            return thumb;
+        }
+    }
+
+    private static void copySampled(int[] row, int step, int[] dst, int offset, int count) {
+        for (int i = 0, x = 0; i < count; i++, x += step) {
+            dst[offset + i] = row[x];
+        }
+    }
+
+    private static BufferedImage decodeJpeg(File file, int size) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            if (iis == null) throw new IOException("Nie można otworzyć pliku: " + file);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) throw new IOException("Nieobsługiwany format pliku!");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int step = stepFor(reader.getWidth(0), reader.getHeight(0), size);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
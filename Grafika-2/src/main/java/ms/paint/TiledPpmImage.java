@@ -0,0 +1,147 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// --- KLASA POMOCNICZA: DUŻY OBRAZ P6 DEKODOWANY LENIWIE KAFLAMI ---
+// Dane P6 są mapowane do pamięci (kilka MappedByteBuffer, bo jeden obejmuje najwyżej 2 GB),
+// a kafle TILE_SIZE x TILE_SIZE dekodowane dopiero, gdy panel ich potrzebuje.
+// Przy małym powiększeniu kafel poziomu L bierze co 2^L-ty piksel, więc pokrywa (TILE_SIZE << L)
+// pikseli źródła i cały obraz mieści się w kilku kaflach. Zdekodowane kafle trzyma pamięć LRU
+// ograniczona budżetem bajtów - najdawniej użyte są usuwane.
+class TiledPpmImage {
+
+    static final int TILE_SIZE = 512;
+
+    private final File file;
+    private final PpmReader.Header header;
+    private final MappedByteBuffer[] chunks;
+    private final int rowsPerChunk;
+    private final int[] lut;
+    private final long memoryBudget;
+    private long memoryBytes;
+
+    // accessOrder = true -> iteracja od najdawniej użytego kafla
+    private final LinkedHashMap<Long, BufferedImage> cache = new LinkedHashMap<>(64, 0.75f, true);
+
+    private TiledPpmImage(File file, PpmReader.Header header, MappedByteBuffer[] chunks, int rowsPerChunk, long memoryBudget) {
+        this.file = file;
+        this.header = header;
+        this.chunks = chunks;
+        this.rowsPerChunk = rowsPerChunk;
+        this.lut = header.maxVal == 255 ? null : PpmReader.scaleLut(header.maxVal);
+        this.memoryBudget = memoryBudget;
+    }
+
+    static TiledPpmImage open(File file, long memoryBudget) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            PpmReader.Header header = PpmReader.readHeader(channel);
+            if (header.ascii) throw new IOException("Tryb kafli obsługuje tylko binarny P6");
+            long rowBytes = header.rowBytes();
+            if (header.dataOffset + rowBytes * header.height > channel.size())
+                throw new IOException("Nieoczekiwany koniec danych");
+
+            // Mapowanie pełnymi wierszami, żeby wiersz nigdy nie był podzielony między bufory
+            int rowsPerChunk = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+            int chunkCount = (header.height + rowsPerChunk - 1) / rowsPerChunk;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                int rows = Math.min(rowsPerChunk, header.height - i * rowsPerChunk);
+                long start = header.dataOffset + (long) i * rowsPerChunk * rowBytes;
+                // Mapowanie pozostaje ważne po zamknięciu kanału
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, rows * rowBytes);
+            }
+            return new TiledPpmImage(file, header, chunks, rowsPerChunk, memoryBudget);
+        }
+    }
+
+    File getFile() { return file; }
+    int getWidth() { return header.width; }
+    int getHeight() { return header.height; }
+
+    // Poziom kafli dla powiększenia: każdy kolejny poziom to dwukrotnie rzadsze próbkowanie
+    static int levelFor(double zoom) {
+        int level = 0;
+        while (level < 16 && zoom * (1 << (level + 1)) <= 1.0) level++;
+        return level;
+    }
+
+    // Zdekodowany kafel (tx, ty) poziomu level; kafle brzegowe są odpowiednio mniejsze
+    synchronized BufferedImage tile(int level, int tx, int ty) {
+        long key = ((long) level << 48) | ((long) ty << 24) | tx;
+        BufferedImage tile = cache.get(key);
+        if (tile == null) {
+            tile = decodeTile(level, tx, ty);
+            cache.put(key, tile);
+            memoryBytes += tileBytes(tile);
+            evict();
+        }
+        return tile;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Long, BufferedImage>> it = cache.entrySet().iterator();
+        // Ostatnio dodany kafel zostaje zawsze, nawet gdy sam przekracza budżet
+        while (memoryBytes > memoryBudget && cache.size() > 1 && it.hasNext()) {
+            memoryBytes -= tileBytes(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    synchronized void clearCache() {
+        cache.clear();
+        memoryBytes = 0;
+    }
+
+    private static long tileBytes(BufferedImage tile) {
+        return (long) tile.getWidth() * tile.getHeight() * 4;
+    }
+
+    private BufferedImage decodeTile(int level, int tx, int ty) {
+        int step = 1 << level;
+        int extent = TILE_SIZE << level;
+        int x0 = tx * extent; int y0 = ty * extent;
+        int tw = (Math.min(extent, header.width - x0) + step - 1) / step;
+        int th = (Math.min(extent, header.height - y0) + step - 1) / step;
+
+        BufferedImage tile = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        int bps = header.bytesPerSample();
+        int pixelBytes = 3 * bps;
+        byte[] row = new byte[tw * pixelBytes];
+
+        for (int j = 0; j < th; j++) {
+            int y = y0 + j * step;
+            MappedByteBuffer chunk = chunks[y / rowsPerChunk];
+            int rowStart = (y % rowsPerChunk) * header.rowBytes() + x0 * pixelBytes;
+            if (step == 1) {
+                chunk.get(rowStart, row, 0, row.length);
+            } else {
+                // Tylko co step-ty piksel - nieużywane strony pliku nie są w ogóle dotykane
+                for (int i = 0, src = rowStart; i < row.length; i += pixelBytes, src += step * pixelBytes) {
+                    chunk.get(src, row, i, pixelBytes);
+                }
+            }
+            PpmReader.decodeP6Rows(row, pixels, j * tw, tw, bps, lut);
+        }
+        return tile;
+    }
+
+    // Pojedynczy piksel prosto z mapowania (podgląd wartości pod kursorem), z alfą jak BufferedImage.getRGB
+    int getRGB(int x, int y) {
+        int pixelBytes = 3 * header.bytesPerSample();
+        byte[] px = new byte[pixelBytes];
+        chunks[y / rowsPerChunk].get((y % rowsPerChunk) * header.rowBytes() + x * pixelBytes, px, 0, pixelBytes);
+        int[] out = new int[1];
+        PpmReader.decodeP6Rows(px, out, 0, 1, header.bytesPerSample(), lut);
+        return out[0] | 0xFF000000;
+    }
+}
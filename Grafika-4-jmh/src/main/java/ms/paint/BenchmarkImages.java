@@ -0,0 +1,37 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+// --- KLASA POMOCNICZA: OBRAZY TESTOWE DLA BENCHMARKÓW ---
+class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    // Obraz 4:3 o zadanej liczbie megapikseli, wypełniony powtarzalnym szumem
+    static BufferedImage random(int megapixels, long seed) {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000.0 * 4 / 3));
+        int height = (int) Math.round(megapixels * 1_000_000.0 / width);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = RasterUtils.pixels(image);
+        Random random = new Random(seed);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() & 0xFFFFFF;
+        }
+        return image;
+    }
+
+    // Maska k x k: "box" (rzędu 1 - ścieżka separowalna) albo "dense" (losowe wagi - pełne 2D)
+    static float[][] kernel(String type, int size, long seed) {
+        float[][] kernel = new float[size][size];
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                kernel[i][j] = type.equals("box") ? 1 : random.nextInt(7) - 2;
+            }
+        }
+        if (type.equals("dense")) kernel[size / 2][size / 2] = size * size;
+        return kernel;
+    }
+}
@@ -0,0 +1,39 @@
+package ms.paint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// applyFilter: maski 3x3..15x15, "box" (ścieżka separowalna) i "dense" (pełne 2D)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ConvolutionBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    @Param({"3", "5", "7", "9", "11", "13", "15"})
+    public int kernelSize;
+
+    @Param({"box", "dense"})
+    public String kernelType;
+
+    private BufferedImage image;
+    private float[][] kernel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.random(megapixels, 1);
+        kernel = BenchmarkImages.kernel(kernelType, kernelSize, 2);
+    }
+
+    @Benchmark
+    public BufferedImage convolve() {
+        return ImageOps.convolve(image, kernel);
+    }
+}
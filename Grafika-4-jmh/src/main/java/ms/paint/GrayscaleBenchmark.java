@@ -0,0 +1,36 @@
+package ms.paint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Skala szarości: średnia i ważona
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class GrayscaleBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.random(megapixels, 6);
+    }
+
+    @Benchmark
+    public BufferedImage grayscaleAverage() {
+        return ImageOps.grayscale(image, ImageOps::toGrayscaleAverage);
+    }
+
+    @Benchmark
+    public BufferedImage grayscaleWeighted() {
+        return ImageOps.grayscale(image, ImageOps::toGrayscaleWeighted);
+    }
+}
@@ -0,0 +1,34 @@
+package ms.paint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// applyMedianFilter: okna 3x3..15x15 - czas powinien być praktycznie niezależny od rozmiaru okna
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class MedianBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    @Param({"3", "5", "7", "9", "11", "13", "15"})
+    public int windowSize;
+
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.random(megapixels, 3);
+    }
+
+    @Benchmark
+    public BufferedImage median() {
+        return ImageOps.median(image, windowSize);
+    }
+}
@@ -0,0 +1,46 @@
+package ms.paint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Przekształcenia punktowe.
+// Potok 1 i 5 operacji - oba kosztują jedno przejście po rastrze (jedna tablica LUT).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class PointOpsBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    @Param({"1", "5"})
+    public int chainLength;
+
+    private BufferedImage image;
+    private PointOpPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.random(megapixels, 5);
+        pipeline = new PointOpPipeline();
+        for (int i = 0; i < chainLength; i++) {
+            switch (i % 5) {
+                case 0: pipeline.add(ImageOps::addValue, 20); break;
+                case 1: pipeline.addFloat(ImageOps::multiplyValue, 1.1f); break;
+                case 2: pipeline.add(ImageOps::subtractValue, 10); break;
+                case 3: pipeline.addFloat(ImageOps::divideValue, 1.05f); break;
+                default: pipeline.add(ImageOps::changeBrightness, -5); break;
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage pointOps() {
+        return ImageOps.pointOps(image, pipeline);
+    }
+}
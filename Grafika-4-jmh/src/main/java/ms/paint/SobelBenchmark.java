@@ -0,0 +1,40 @@
+package ms.paint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// applySobelFilter: moduł gradientu L2 (sqrt) i L1 (|gx| + |gy|)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SobelBenchmark {
+
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    // Nazwa zamiast typu wyliczeniowego - kod generowany przez JMH (pakiet ms.paint.jmh_generated)
+    // nie widzi pakietowo-prywatnego SobelEngine.Magnitude
+    @Param({"L2", "L1"})
+    public String magnitude;
+
+    private SobelEngine.Magnitude mode;
+    private BufferedImage image;
+    // Jeden silnik na cały pomiar - bufor luminancji jest używany ponownie jak w podglądzie wideo
+    private final SobelEngine engine = new SobelEngine();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.random(megapixels, 4);
+        mode = SobelEngine.Magnitude.valueOf(magnitude);
+    }
+
+    @Benchmark
+    public BufferedImage sobel() {
+        return ImageOps.sobel(image, engine, mode);
+    }
+}
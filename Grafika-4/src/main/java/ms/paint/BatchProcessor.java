@@ -0,0 +1,261 @@
+package ms.paint;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tryb wsadowy (bez okna) dla łańcucha filtrów z Grafika-4.
+ *
+ * Użycie:
+ *   java ms.paint.BatchProcessor --chain "add:20,gauss,median:5,sobel" --input katalog --output katalog
+ *                                [--threads N] [--format png|jpg|bmp]
+ *
+ * Obrazy są przetwarzane współbieżnie w puli o stałej liczbie wątków, a na końcu wypisywana jest
+ * przepustowość oraz łączny i średni czas każdego etapu (wczytanie, kroki łańcucha, zapis).
+ */
+public class BatchProcessor {
+
+    private final FilterChain chain;
+    private final File outputDir;
+    private final String format;
+    private final int threads;
+
+    // Czasy etapów w nanosekundach, sumowane przez wszystkie wątki
+    private final Map<String, LongAdder> stageNanos = new LinkedHashMap<>();
+    private final LongAdder pixelCount = new LongAdder();
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    // Bufor luminancji Sobela - jeden na wątek puli
+    private final ThreadLocal<SobelEngine> sobelEngines = ThreadLocal.withInitial(SobelEngine::new);
+
+    BatchProcessor(FilterChain chain, File outputDir, String format, int threads) {
+        this.chain = chain;
+        this.outputDir = outputDir;
+        this.format = format;
+        this.threads = threads;
+        stageNanos.put("wczytanie", new LongAdder());
+        for (FilterChain.Stage stage : chain.stages()) {
+            stageNanos.putIfAbsent(stage.name, new LongAdder());
+        }
+        stageNanos.put("zapis", new LongAdder());
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        if (options == null || !options.containsKey("chain") || !options.containsKey("input") || !options.containsKey("output")) {
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        FilterChain chain;
+        try {
+            chain = FilterChain.parse(options.get("chain"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Błąd łańcucha filtrów: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        int threads;
+        try {
+            threads = Integer.parseInt(options.getOrDefault("threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+        } catch (NumberFormatException e) {
+            System.err.println("Niepoprawna liczba wątków: " + options.get("threads"));
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        String format = options.getOrDefault("format", "png").toLowerCase(Locale.ROOT);
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            System.err.println("Nieobsługiwany format wyjściowy: " + format);
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        File inputDir = new File(options.get("input"));
+        File outputDir = new File(options.get("output"));
+        if (!inputDir.isDirectory()) {
+            System.err.println("Katalog wejściowy nie istnieje: " + inputDir);
+            System.exit(2);
+            return;
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Nie można utworzyć katalogu wyjściowego: " + outputDir);
+            System.exit(2);
+            return;
+        }
+
+        List<File> files = listImages(inputDir);
+        Map<File, String> targets = targetNames(files, format);
+        if (targets == null) {
+            System.err.println("Pliki wejściowe dają powtarzające się nazwy wyjściowe - zmień nazwy plików.");
+            System.exit(2);
+            return;
+        }
+
+        BatchProcessor processor = new BatchProcessor(chain, outputDir, format, Math.max(1, threads));
+        boolean ok = processor.run(files, targets);
+        System.exit(ok ? 0 : 1);
+    }
+
+    // targets - nazwa pliku wyjściowego dla każdego wejścia (patrz targetNames)
+    boolean run(List<File> files, Map<File, String> targets) {
+        long start = System.nanoTime();
+        // Stała liczba wątków ogranicza też liczbę obrazów jednocześnie w pamięci
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File file : files) {
+                String target = targets.get(file);
+                futures.add(pool.submit(() -> processFile(file, target)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    System.err.println("Błąd zadania: " + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        printReport(System.nanoTime() - start);
+        return failed.get() == 0;
+    }
+
+    private void processFile(File file, String targetName) {
+        try {
+            long t = System.nanoTime();
+            BufferedImage image = ImageOps.load(file);
+            t = record("wczytanie", t);
+
+            SobelEngine sobelEngine = sobelEngines.get();
+            for (FilterChain.Stage stage : chain.stages()) {
+                image = stage.apply(image, sobelEngine);
+                t = record(stage.name, t);
+            }
+
+            File target = new File(outputDir, targetName);
+            if (!ImageIO.write(forFormat(image), format, target)) {
+                throw new IOException("Brak ImageWritera dla formatu " + format);
+            }
+            record("zapis", t);
+
+            pixelCount.add((long) image.getWidth() * image.getHeight());
+            int done = processed.incrementAndGet();
+            System.out.println("[" + done + "] " + file.getName() + " -> " + target.getName());
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("Błąd przetwarzania " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private long record(String stage, long since) {
+        long now = System.nanoTime();
+        stageNanos.get(stage).add(now - since);
+        return now;
+    }
+
+    // JPEG nie obsługuje kanału alfa - konwersja do TYPE_INT_RGB (jak przy eksporcie w oknie)
+    private BufferedImage forFormat(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha() || format.equals("png")) return image;
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private void printReport(long wallNanos) {
+        double seconds = wallNanos / 1e9;
+        int count = processed.get();
+        double megapixels = pixelCount.sum() / 1e6;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Przetworzono: %d obrazów (%d błędów), %.1f MP w %.2f s (%d wątków)%n",
+                count, failed.get(), megapixels, seconds, threads);
+        System.out.printf(Locale.ROOT, "Przepustowość: %.2f obrazów/s, %.2f MP/s%n",
+                count / seconds, megapixels / seconds);
+        System.out.println("Czasy etapów (suma wątków / średnio na obraz):");
+        for (Map.Entry<String, LongAdder> entry : stageNanos.entrySet()) {
+            double totalMs = entry.getValue().sum() / 1e6;
+            System.out.printf(Locale.ROOT, "  %-24s %10.1f ms %10.2f ms%n",
+                    entry.getKey(), totalMs, count == 0 ? 0.0 : totalMs / count);
+        }
+    }
+
+    private static List<File> listImages(File dir) {
+        List<String> suffixes = Arrays.asList(ImageIO.getReaderFileSuffixes());
+        File[] files = dir.listFiles(f -> f.isFile() && suffixes.contains(extension(f).toLowerCase(Locale.ROOT)));
+        List<File> result = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            result.addAll(Arrays.asList(files));
+        }
+        return result;
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1);
+    }
+
+    // Nazwa wyjściowa to nazwa bez rozszerzenia + format; pliki o tej samej nazwie bazowej
+    // (np. a.png i a.jpg) zachowują rozszerzenie źródła (a.png.png, a.jpg.png), żeby wątki puli
+    // nie nadpisywały sobie wyników. null, gdy i tak powstają duplikaty.
+    static Map<File, String> targetNames(List<File> files, String format) {
+        Map<String, Integer> baseCounts = new LinkedHashMap<>();
+        for (File file : files) baseCounts.merge(baseName(file).toLowerCase(Locale.ROOT), 1, Integer::sum);
+        Map<File, String> targets = new LinkedHashMap<>();
+        Set<String> used = new HashSet<>();
+        for (File file : files) {
+            boolean clash = baseCounts.get(baseName(file).toLowerCase(Locale.ROOT)) > 1;
+            String name = (clash ? file.getName() : baseName(file)) + "." + format;
+            if (!used.add(name.toLowerCase(Locale.ROOT))) return null;
+            targets.put(file, name);
+        }
+        return targets;
+    }
+
+    private static String baseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) return null;
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static void printUsage() {
+        System.err.println("Użycie: java ms.paint.BatchProcessor --chain SPEC --input KATALOG --output KATALOG"
+                + " [--threads N] [--format png|jpg|bmp]");
+        System.err.println("Kroki SPEC (oddzielone przecinkami): " + FilterChain.SYNTAX);
+    }
+}
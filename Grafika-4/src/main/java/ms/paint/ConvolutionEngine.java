@@ -0,0 +1,251 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// --- KLASA POMOCNICZA: RÓWNOLEGŁA KONWOLUCJA NA TABLICY int[] (Replicate Padding) ---
+// Wynik jest identyczny z wersją opartą na getSafeRGB: ta sama kolejność sumowania
+// w arytmetyce float i to samo dzielenie przez sumę wag.
+// Maski rzędu 1 (np. uśredniająca, Gauss) są wykrywane automatycznie i liczone jako dwa
+// przebiegi 1D: poziomy, a następnie pionowy - koszt O(2k) zamiast O(k^2) na piksel.
+// Czynniki nie są normalizowane (wiersz i kolumna to fragmenty samej maski, dzielnik mnożony
+// przez element osiowy), więc dla maski całkowitoliczbowej wszystkie sumy pośrednie są liczbami
+// całkowitymi. Taka maska idzie ścieżką rozdzielną tylko wtedy, gdy te sumy mieszczą się dokładnie
+// w float (< 2^24) - wynik jest wtedy identyczny z przebiegiem 2D. Przy wagach ułamkowych
+// inna kolejność sumowania może dać różnicę zaokrąglenia o 1 poziom.
+class ConvolutionEngine {
+
+    private ConvolutionEngine() {
+    }
+
+    static BufferedImage convolve(BufferedImage source, float[][] kernel) {
+        BufferedImage resultImage = RasterUtils.createCompatible(source);
+        convolve(RasterUtils.pixels(source), RasterUtils.pixels(resultImage),
+                source.getWidth(), source.getHeight(), kernel);
+        return resultImage;
+    }
+
+    static void convolve(int[] src, int[] dst, int w, int h, float[][] kernel) {
+        float[][] factors = separate(kernel);
+        if (factors != null) {
+            convolveSeparable(src, dst, w, h, factors[0], factors[1], sumOfWeights(kernel), factors[2][0]);
+        } else {
+            convolve2D(src, dst, w, h, kernel);
+        }
+    }
+
+    private static float sumOfWeights(float[][] kernel) {
+        float sum = 0;
+        for (float[] row : kernel) { for (float weight : row) { sum += weight; } }
+        return sum;
+    }
+
+    // Rozkład maski na iloczyn zewnętrzny kolumny i wiersza: kernel[i][j] * pivot = column[i] * row[j],
+    // gdzie column i row to kolumna i wiersz elementu osiowego (największego co do modułu).
+    // Zwraca {column, row, {pivot}} albo null, gdy maska nie jest rzędu 1 lub (dla masek
+    // całkowitoliczbowych) ścieżka rozdzielna nie dałaby wyniku identycznego z 2D.
+    static float[][] separate(float[][] kernel) {
+        int kHeight = kernel.length; int kWidth = kernel[0].length;
+        int pivotY = 0; int pivotX = 0; float maxAbs = 0;
+        boolean integral = true; double absSum = 0;
+        for (int ky = 0; ky < kHeight; ky++) {
+            if (kernel[ky].length != kWidth) return null;
+            for (int kx = 0; kx < kWidth; kx++) {
+                float weight = kernel[ky][kx];
+                if (Math.abs(weight) > maxAbs) {
+                    maxAbs = Math.abs(weight);
+                    pivotY = ky; pivotX = kx;
+                }
+                if (weight != Math.rint(weight)) integral = false;
+                absSum += Math.abs(weight);
+            }
+        }
+        if (maxAbs == 0) return null;
+
+        float pivot = kernel[pivotY][pivotX];
+        float[] column = new float[kHeight];
+        float[] row = new float[kWidth];
+        for (int ky = 0; ky < kHeight; ky++) column[ky] = kernel[ky][pivotX];
+        for (int kx = 0; kx < kWidth; kx++) row[kx] = kernel[pivotY][kx];
+
+        if (integral) {
+            // Największa suma pośrednia (przebieg pionowy) to 255 * |pivot| * suma |wag|; powyżej 2^24
+            // float gubi jedności, a przebieg 2D zaokrągla w innej kolejności niż rozdzielny
+            if (255.0 * maxAbs * absSum > (1 << 24)) return null;
+            for (int ky = 0; ky < kHeight; ky++) {
+                for (int kx = 0; kx < kWidth; kx++) {
+                    if ((long) column[ky] * (long) row[kx] != (long) kernel[ky][kx] * (long) pivot) return null;
+                }
+            }
+        } else {
+            // Tolerancja względna - odrzucamy maski, które tylko w przybliżeniu są rzędu 1
+            float tolerance = maxAbs * maxAbs * 1e-6f;
+            for (int ky = 0; ky < kHeight; ky++) {
+                for (int kx = 0; kx < kWidth; kx++) {
+                    if (Math.abs(column[ky] * row[kx] - kernel[ky][kx] * pivot) > tolerance) return null;
+                }
+            }
+        }
+        return new float[][] { column, row, { pivot } };
+    }
+
+    private static void convolveSeparable(int[] src, int[] dst, int w, int h,
+                                          float[] column, float[] row, float sumOfWeights, float pivot) {
+        int kHeight = column.length; int kWidth = row.length;
+        int halfKWidth = kWidth / 2; int halfKHeight = kHeight / 2;
+        // Sumy rozdzielne są pivot razy większe niż w przebiegu 2D - dzielnik też
+        float finalDivisor = ((Math.abs(sumOfWeights) < 0.001f) ? 1.0f : sumOfWeights) * pivot;
+
+        int left = Math.min(halfKWidth, w);
+        int right = Math.max(left, w - (kWidth - 1 - halfKWidth));
+
+        RasterUtils.forEachRowBand(h, (yStart, yEnd) -> {
+            // Bufor cykliczny wyników przebiegu poziomego: wiersz źródłowy sy trafia do slotu sy % kHeight.
+            // Potrzebne wiersze zawsze mieszczą się w oknie kHeight kolejnych indeksów, więc sloty nie kolidują.
+            float[][] hR = new float[kHeight][w];
+            float[][] hG = new float[kHeight][w];
+            float[][] hB = new float[kHeight][w];
+            int[] slotRow = new int[kHeight];
+            Arrays.fill(slotRow, -1);
+            int[] slots = new int[kHeight];
+
+            for (int y = yStart; y < yEnd; y++) {
+                for (int ky = 0; ky < kHeight; ky++) {
+                    int sourceY = Math.max(0, Math.min(h - 1, y + ky - halfKHeight));
+                    int slot = sourceY % kHeight;
+                    if (slotRow[slot] != sourceY) {
+                        horizontalPass(src, sourceY * w, w, row, halfKWidth, left, right, hR[slot], hG[slot], hB[slot]);
+                        slotRow[slot] = sourceY;
+                    }
+                    slots[ky] = slot;
+                }
+
+                int rowBase = y * w;
+                for (int x = 0; x < w; x++) {
+                    float rSum = 0; float gSum = 0; float bSum = 0;
+                    for (int ky = 0; ky < kHeight; ky++) {
+                        int slot = slots[ky];
+                        float weight = column[ky];
+                        rSum += hR[slot][x] * weight;
+                        gSum += hG[slot][x] * weight;
+                        bSum += hB[slot][x] * weight;
+                    }
+                    dst[rowBase + x] = pack(src[rowBase + x], rSum, gSum, bSum, finalDivisor);
+                }
+            }
+        });
+    }
+
+    // Przebieg poziomy maski 1D dla jednego wiersza źródłowego
+    private static void horizontalPass(int[] src, int rowOffset, int w, float[] row, int halfKWidth,
+                                       int left, int right, float[] outR, float[] outG, float[] outB) {
+        int kWidth = row.length;
+        for (int x = 0; x < w; x++) {
+            float rSum = 0; float gSum = 0; float bSum = 0;
+            if (x >= left && x < right) {
+                int index = rowOffset + x - halfKWidth;
+                for (int kx = 0; kx < kWidth; kx++) {
+                    int rgb = src[index + kx];
+                    float weight = row[kx];
+                    rSum += ((rgb >> 16) & 0xFF) * weight;
+                    gSum += ((rgb >> 8) & 0xFF) * weight;
+                    bSum += (rgb & 0xFF) * weight;
+                }
+            } else {
+                for (int kx = 0; kx < kWidth; kx++) {
+                    int pixelX = Math.max(0, Math.min(w - 1, x + kx - halfKWidth));
+                    int rgb = src[rowOffset + pixelX];
+                    float weight = row[kx];
+                    rSum += ((rgb >> 16) & 0xFF) * weight;
+                    gSum += ((rgb >> 8) & 0xFF) * weight;
+                    bSum += (rgb & 0xFF) * weight;
+                }
+            }
+            outR[x] = rSum; outG[x] = gSum; outB[x] = bSum;
+        }
+    }
+
+    private static void convolve2D(int[] src, int[] dst, int w, int h, float[][] kernel) {
+        int kHeight = kernel.length; int kWidth = kernel[0].length;
+        int halfKWidth = kWidth / 2; int halfKHeight = kHeight / 2;
+
+        // Spłaszczona maska - jeden odczyt z tablicy zamiast dwóch
+        float[] weights = new float[kWidth * kHeight];
+        float sumOfWeights = 0;
+        for (int ky = 0; ky < kHeight; ky++) {
+            for (int kx = 0; kx < kWidth; kx++) {
+                weights[ky * kWidth + kx] = kernel[ky][kx];
+                sumOfWeights += kernel[ky][kx];
+            }
+        }
+        float finalDivisor = (Math.abs(sumOfWeights) < 0.001f) ? 1.0f : sumOfWeights;
+
+        // Kolumny [0, left) i [right, w) wymagają przycinania współrzędnych, środek nie
+        int left = Math.min(halfKWidth, w);
+        int right = Math.max(left, w - (kWidth - 1 - halfKWidth));
+
+        RasterUtils.forEachRowBand(h, (yStart, yEnd) -> {
+            int[] rowOffsets = new int[kHeight];
+            for (int y = yStart; y < yEnd; y++) {
+                // Przycinanie w pionie liczone raz na wiersz
+                for (int ky = 0; ky < kHeight; ky++) {
+                    int pixelY = Math.max(0, Math.min(h - 1, y + ky - halfKHeight));
+                    rowOffsets[ky] = pixelY * w;
+                }
+                int rowBase = y * w;
+
+                for (int x = 0; x < left; x++) {
+                    dst[rowBase + x] = borderPixel(src, w, x, rowOffsets, weights, kWidth, kHeight, halfKWidth, finalDivisor, src[rowBase + x]);
+                }
+
+                for (int x = left; x < right; x++) {
+                    float rSum = 0; float gSum = 0; float bSum = 0;
+                    int startX = x - halfKWidth;
+                    for (int ky = 0; ky < kHeight; ky++) {
+                        int index = rowOffsets[ky] + startX;
+                        int weightIndex = ky * kWidth;
+                        for (int kx = 0; kx < kWidth; kx++) {
+                            int rgb = src[index + kx];
+                            float weight = weights[weightIndex + kx];
+                            rSum += ((rgb >> 16) & 0xFF) * weight;
+                            gSum += ((rgb >> 8) & 0xFF) * weight;
+                            bSum += (rgb & 0xFF) * weight;
+                        }
+                    }
+                    dst[rowBase + x] = pack(src[rowBase + x], rSum, gSum, bSum, finalDivisor);
+                }
+
+                for (int x = right; x < w; x++) {
+                    dst[rowBase + x] = borderPixel(src, w, x, rowOffsets, weights, kWidth, kHeight, halfKWidth, finalDivisor, src[rowBase + x]);
+                }
+            }
+        });
+    }
+
+    private static int borderPixel(int[] src, int w, int x, int[] rowOffsets, float[] weights,
+                                   int kWidth, int kHeight, int halfKWidth, float finalDivisor, int center) {
+        float rSum = 0; float gSum = 0; float bSum = 0;
+        for (int ky = 0; ky < kHeight; ky++) {
+            int rowOffset = rowOffsets[ky];
+            for (int kx = 0; kx < kWidth; kx++) {
+                int pixelX = Math.max(0, Math.min(w - 1, x + kx - halfKWidth));
+                int rgb = src[rowOffset + pixelX];
+                float weight = weights[ky * kWidth + kx];
+                rSum += ((rgb >> 16) & 0xFF) * weight;
+                gSum += ((rgb >> 8) & 0xFF) * weight;
+                bSum += (rgb & 0xFF) * weight;
+            }
+        }
+        return pack(center, rSum, gSum, bSum, finalDivisor);
+    }
+
+    // Składa piksel wynikowy, zachowując kanał alfa piksela środkowego
+    private static int pack(int center, float rSum, float gSum, float bSum, float finalDivisor) {
+        int newR = clamp((int) (rSum / finalDivisor));
+        int newG = clamp((int) (gSum / finalDivisor));
+        int newB = clamp((int) (bSum / finalDivisor));
+        return (center & 0xFF000000) | (newR << 16) | (newG << 8) | newB;
+    }
+
+    static int clamp(int value) { return Math.max(0, Math.min(255, value)); }
+}
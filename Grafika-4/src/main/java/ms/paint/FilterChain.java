@@ -0,0 +1,156 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// --- KLASA POMOCNICZA: ŁAŃCUCH FILTRÓW ZAPISANY TEKSTOWO (dla trybu wsadowego) ---
+// Kroki oddzielone przecinkami, parametry dwukropkami, np.:
+//   add:50,mul:1.2,gauss,median:5,sobel
+//   mask:3:0;-1;0;-1;5;-1;0;-1;0
+// Kolejne przekształcenia punktowe są łączone w jeden krok z jedną tablicą LUT.
+class FilterChain {
+
+    static final String SYNTAX =
+            "add:N | sub:N | mul:F | div:F | brightness:N | gray-avg | gray | smooth | sharpen | gauss"
+            + " | mask:K:w1;w2;...;wK*K | median:K | sobel | sobel-l1";
+
+    // Jeden krok łańcucha; engine Sobela jest osobny dla każdego wątku przetwarzającego
+    static class Stage {
+        final String name;
+        private final StageFunction function;
+
+        Stage(String name, StageFunction function) {
+            this.name = name;
+            this.function = function;
+        }
+
+        BufferedImage apply(BufferedImage source, SobelEngine sobelEngine) {
+            return function.apply(source, sobelEngine);
+        }
+    }
+
+    @FunctionalInterface
+    interface StageFunction {
+        BufferedImage apply(BufferedImage source, SobelEngine sobelEngine);
+    }
+
+    private final List<Stage> stages;
+
+    private FilterChain(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    List<Stage> stages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    static FilterChain parse(String spec) {
+        List<Stage> stages = new ArrayList<>();
+        PointOpPipeline pendingPointOps = null;
+        StringBuilder pendingName = new StringBuilder();
+
+        for (String rawStep : spec.split(",")) {
+            String step = rawStep.trim();
+            if (step.isEmpty()) continue;
+            String[] parts = step.split(":");
+            String op = parts[0].toLowerCase();
+
+            boolean pointOp = true;
+            PointOpPipeline pipeline = pendingPointOps != null ? pendingPointOps : new PointOpPipeline();
+            switch (op) {
+                case "add": pipeline.add(ImageOps::addValue, intArg(parts, step)); break;
+                case "sub": pipeline.add(ImageOps::subtractValue, intArg(parts, step)); break;
+                case "mul": pipeline.addFloat(ImageOps::multiplyValue, floatArg(parts, step)); break;
+                case "div": pipeline.addFloat(ImageOps::divideValue, floatArg(parts, step)); break;
+                case "brightness": pipeline.add(ImageOps::changeBrightness, intArg(parts, step)); break;
+                default: pointOp = false;
+            }
+            if (pointOp) {
+                pendingPointOps = pipeline;
+                pendingName.append(pendingName.length() == 0 ? "" : "+").append(step);
+                continue;
+            }
+            if (pendingPointOps != null) {
+                stages.add(pointStage(pendingName.toString(), pendingPointOps));
+                pendingPointOps = null;
+                pendingName.setLength(0);
+            }
+
+            switch (op) {
+                case "gray-avg": stages.add(new Stage(step, (s, e) -> ImageOps.grayscale(s, ImageOps::toGrayscaleAverage))); break;
+                case "gray": stages.add(new Stage(step, (s, e) -> ImageOps.grayscale(s, ImageOps::toGrayscaleWeighted))); break;
+                case "smooth": stages.add(convolutionStage(step, ImageOps.FilterMasks.SMOOTHING_3X3)); break;
+                case "sharpen": stages.add(convolutionStage(step, ImageOps.FilterMasks.SHARPENING_3X3)); break;
+                case "gauss": stages.add(convolutionStage(step, ImageOps.FilterMasks.GAUSSIAN_3X3_UNNORM)); break;
+                case "mask": stages.add(convolutionStage(step, maskArg(parts, step))); break;
+                case "median": {
+                    int size = intArg(parts, step);
+                    if (size <= 1 || size % 2 == 0) {
+                        throw new IllegalArgumentException("Rozmiar mediany musi być nieparzysty i większy niż 1: " + step);
+                    }
+                    stages.add(new Stage(step, (s, e) -> ImageOps.median(s, size)));
+                    break;
+                }
+                case "sobel": stages.add(new Stage(step, (s, e) -> ImageOps.sobel(s, e, SobelEngine.Magnitude.L2))); break;
+                case "sobel-l1": stages.add(new Stage(step, (s, e) -> ImageOps.sobel(s, e, SobelEngine.Magnitude.L1))); break;
+                default: throw new IllegalArgumentException("Nieznany krok łańcucha: " + step);
+            }
+        }
+        if (pendingPointOps != null) {
+            stages.add(pointStage(pendingName.toString(), pendingPointOps));
+        }
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("Pusty łańcuch filtrów");
+        }
+        return new FilterChain(stages);
+    }
+
+    private static Stage pointStage(String name, PointOpPipeline pipeline) {
+        return new Stage(name, (s, e) -> ImageOps.pointOps(s, pipeline));
+    }
+
+    private static Stage convolutionStage(String name, float[][] kernel) {
+        return new Stage(name, (s, e) -> ImageOps.convolve(s, kernel));
+    }
+
+    private static int intArg(String[] parts, String step) {
+        if (parts.length < 2) throw new IllegalArgumentException("Brak parametru: " + step);
+        try {
+            return Integer.parseInt(parts[1].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Niepoprawna wartość całkowita: " + step);
+        }
+    }
+
+    private static float floatArg(String[] parts, String step) {
+        if (parts.length < 2) throw new IllegalArgumentException("Brak parametru: " + step);
+        try {
+            return Float.parseFloat(parts[1].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Niepoprawna wartość zmiennoprzecinkowa: " + step);
+        }
+    }
+
+    private static float[][] maskArg(String[] parts, String step) {
+        int size = intArg(parts, step);
+        if (size <= 1 || size % 2 == 0) {
+            throw new IllegalArgumentException("Rozmiar maski musi być nieparzysty i większy niż 1: " + step);
+        }
+        if (parts.length < 3) throw new IllegalArgumentException("Brak wag maski: " + step);
+        String[] weights = parts[2].split(";");
+        if (weights.length != size * size) {
+            throw new IllegalArgumentException("Maska " + size + "x" + size + " wymaga " + (size * size) + " wag: " + step);
+        }
+        float[][] kernel = new float[size][size];
+        try {
+            for (int i = 0; i < weights.length; i++) {
+                kernel[i / size][i % size] = Float.parseFloat(weights[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Niepoprawna waga maski: " + step);
+        }
+        return kernel;
+    }
+}
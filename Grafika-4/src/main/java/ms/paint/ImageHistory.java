@@ -0,0 +1,303 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// --- KLASA POMOCNICZA: HISTORIA COFNIJ/PONÓW Z KOMPRESOWANYMI RÓŻNICAMI KAFLI ---
+// Każdy krok historii to XOR między stanem przed i po operacji, zapisany tylko dla kafli 64x64,
+// które się zmieniły, i skompresowany Deflaterem. Ta sama różnica działa w obie strony:
+// stan_po ^ delta = stan_przed (cofnij) oraz stan_przed ^ delta = stan_po (ponów).
+// Gdy skompresowane różnice w pamięci przekraczają budżet, najstarsze trafiają do pliku tymczasowego.
+// Usunięte z historii różnice zostawiają w pliku martwe bajty; gdy jest ich więcej niż żywych,
+// plik jest przepisywany z samymi żywymi danymi, więc zajętość dysku też pozostaje ograniczona.
+class ImageHistory {
+
+    static final int TILE_SIZE = 64;
+    private static final int MAX_ENTRIES = 200;
+
+    // Różnica między dwoma stanami o tym samym rozmiarze
+    static class Delta {
+        final int width;
+        final int height;
+        final int[] tiles;
+        private byte[] payload;
+        private final int payloadLength;
+        private long fileOffset = -1;
+
+        private Delta(int width, int height, int[] tiles, byte[] payload) {
+            this.width = width;
+            this.height = height;
+            this.tiles = tiles;
+            this.payload = payload;
+            this.payloadLength = payload.length;
+        }
+
+        boolean isSpilled() {
+            return payload == null;
+        }
+    }
+
+    private final List<Delta> entries = new ArrayList<>();
+    // Liczba kroków zastosowanych względem najstarszego zapamiętanego stanu
+    private int position;
+    private final long memoryBudget;
+    private long memoryBytes;
+    private File spillPath;
+    private RandomAccessFile spillFile;
+    // Bajty w pliku należące do różnic z historii oraz bajty po różnicach już usuniętych
+    private long spillLiveBytes;
+    private long spillDeadBytes;
+
+    ImageHistory(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    // Liczy różnicę before -> after; null, gdy obrazy mają inny rozmiar lub są identyczne.
+    // Wołana poza EDT (w wątku zadania filtra), bo dla dużych obrazów trwa zauważalnie.
+    static Delta diff(BufferedImage before, BufferedImage after) {
+        int w = before.getWidth(); int h = before.getHeight();
+        if (w != after.getWidth() || h != after.getHeight()) return null;
+        int[] src = RasterUtils.pixels(before);
+        int[] dst = RasterUtils.pixels(after);
+        int tilesX = (w + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (h + TILE_SIZE - 1) / TILE_SIZE;
+
+        // Wykrywanie zmienionych kafli równolegle, po wierszach kafli
+        boolean[] changed = new boolean[tilesX * tilesY];
+        RasterUtils.forEachRowBand(tilesY, 1, (tyStart, tyEnd) -> {
+            for (int ty = tyStart; ty < tyEnd; ty++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    changed[ty * tilesX + tx] = tileDiffers(src, dst, w, h, tx, ty);
+                }
+            }
+        });
+
+        int count = 0;
+        for (boolean c : changed) if (c) count++;
+        if (count == 0) return null;
+        int[] tiles = new int[count];
+        for (int i = 0, j = 0; i < changed.length; i++) if (changed[i]) tiles[j++] = i;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater, 1 << 16)) {
+            byte[] rowBuffer = new byte[TILE_SIZE * 4];
+            for (int tile : tiles) {
+                int x0 = (tile % tilesX) * TILE_SIZE; int y0 = (tile / tilesX) * TILE_SIZE;
+                int tw = Math.min(TILE_SIZE, w - x0); int th = Math.min(TILE_SIZE, h - y0);
+                for (int y = y0; y < y0 + th; y++) {
+                    int index = y * w + x0;
+                    for (int x = 0, b = 0; x < tw; x++, b += 4) {
+                        int v = src[index + x] ^ dst[index + x];
+                        rowBuffer[b] = (byte) (v >>> 24); rowBuffer[b + 1] = (byte) (v >>> 16);
+                        rowBuffer[b + 2] = (byte) (v >>> 8); rowBuffer[b + 3] = (byte) v;
+                    }
+                    out.write(rowBuffer, 0, tw * 4);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return new Delta(w, h, tiles, bytes.toByteArray());
+    }
+
+    private static boolean tileDiffers(int[] src, int[] dst, int w, int h, int tx, int ty) {
+        int x0 = tx * TILE_SIZE; int y0 = ty * TILE_SIZE;
+        int x1 = Math.min(w, x0 + TILE_SIZE); int y1 = Math.min(h, y0 + TILE_SIZE);
+        for (int y = y0; y < y1; y++) {
+            for (int i = y * w + x0, end = y * w + x1; i < end; i++) {
+                if (src[i] != dst[i]) return true;
+            }
+        }
+        return false;
+    }
+
+    // Nowy krok po bieżącej pozycji; kroki do ponowienia przepadają
+    void push(Delta delta) {
+        if (delta == null) return;
+        while (entries.size() > position) {
+            release(entries.remove(entries.size() - 1));
+        }
+        entries.add(delta);
+        memoryBytes += delta.payloadLength;
+        position++;
+        if (entries.size() > MAX_ENTRIES) {
+            release(entries.remove(0));
+            position--;
+        }
+        enforceBudget();
+    }
+
+    boolean canUndo() { return position > 0; }
+
+    boolean canRedo() { return position < entries.size(); }
+
+    BufferedImage undo(BufferedImage current) {
+        if (!canUndo()) return current;
+        BufferedImage previous = apply(current, entries.get(position - 1));
+        position--;
+        return previous;
+    }
+
+    BufferedImage redo(BufferedImage current) {
+        if (!canRedo()) return current;
+        BufferedImage next = apply(current, entries.get(position));
+        position++;
+        return next;
+    }
+
+    void clear() {
+        entries.clear();
+        position = 0;
+        memoryBytes = 0;
+        closeSpillFile();
+    }
+
+    private BufferedImage apply(BufferedImage current, Delta delta) {
+        int w = delta.width; int h = delta.height;
+        BufferedImage result = RasterUtils.createCompatible(current);
+        int[] dst = RasterUtils.pixels(result);
+        System.arraycopy(RasterUtils.pixels(current), 0, dst, 0, dst.length);
+        int tilesX = (w + TILE_SIZE - 1) / TILE_SIZE;
+
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(payloadStream(delta)))) {
+            byte[] rowBuffer = new byte[TILE_SIZE * 4];
+            for (int tile : delta.tiles) {
+                int x0 = (tile % tilesX) * TILE_SIZE; int y0 = (tile / tilesX) * TILE_SIZE;
+                int tw = Math.min(TILE_SIZE, w - x0); int th = Math.min(TILE_SIZE, h - y0);
+                for (int y = y0; y < y0 + th; y++) {
+                    in.readFully(rowBuffer, 0, tw * 4);
+                    int index = y * w + x0;
+                    for (int x = 0, b = 0; x < tw; x++, b += 4) {
+                        int v = ((rowBuffer[b] & 0xFF) << 24) | ((rowBuffer[b + 1] & 0xFF) << 16)
+                                | ((rowBuffer[b + 2] & 0xFF) << 8) | (rowBuffer[b + 3] & 0xFF);
+                        dst[index + x] ^= v;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Błąd odczytu historii zmian", e);
+        }
+        return result;
+    }
+
+    private InputStream payloadStream(Delta delta) throws IOException {
+        if (!delta.isSpilled()) {
+            return new ByteArrayInputStream(delta.payload);
+        }
+        byte[] data = new byte[delta.payloadLength];
+        spillFile.seek(delta.fileOffset);
+        spillFile.readFully(data);
+        return new ByteArrayInputStream(data);
+    }
+
+    // Przenosi najstarsze różnice na dysk, dopóki pamięć przekracza budżet
+    private void enforceBudget() {
+        for (int i = 0; i < entries.size() && memoryBytes > memoryBudget; i++) {
+            Delta delta = entries.get(i);
+            if (delta.isSpilled()) continue;
+            try {
+                if (spillFile == null) {
+                    spillPath = File.createTempFile("grafika-history", ".bin");
+                    spillPath.deleteOnExit();
+                    spillFile = new RandomAccessFile(spillPath, "rw");
+                }
+                long offset = spillFile.length();
+                spillFile.seek(offset);
+                spillFile.write(delta.payload);
+                delta.fileOffset = offset;
+                delta.payload = null;
+                memoryBytes -= delta.payloadLength;
+                spillLiveBytes += delta.payloadLength;
+            } catch (IOException e) {
+                // Bez pliku tymczasowego historia po prostu zostaje w pamięci
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    private void release(Delta delta) {
+        if (!delta.isSpilled()) {
+            memoryBytes -= delta.payloadLength;
+            return;
+        }
+        spillLiveBytes -= delta.payloadLength;
+        spillDeadBytes += delta.payloadLength;
+        if (spillLiveBytes == 0) {
+            closeSpillFile();
+        } else if (spillDeadBytes > spillLiveBytes) {
+            compactSpillFile();
+        }
+    }
+
+    // Przepisuje żywe różnice do nowego pliku i podmienia go; przy błędzie zostaje stary plik
+    private void compactSpillFile() {
+        File newPath = null;
+        RandomAccessFile newFile = null;
+        try {
+            newPath = File.createTempFile("grafika-history", ".bin");
+            newPath.deleteOnExit();
+            newFile = new RandomAccessFile(newPath, "rw");
+            long[] offsets = new long[entries.size()];
+            long offset = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                Delta delta = entries.get(i);
+                if (!delta.isSpilled()) continue;
+                byte[] data = new byte[delta.payloadLength];
+                spillFile.seek(delta.fileOffset);
+                spillFile.readFully(data);
+                newFile.write(data);
+                offsets[i] = offset;
+                offset += data.length;
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).isSpilled()) entries.get(i).fileOffset = offsets[i];
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (newFile != null) {
+                try {
+                    newFile.close();
+                } catch (IOException ignored) {
+                    // plik i tak jest usuwany
+                }
+            }
+            if (newPath != null) newPath.delete();
+            return;
+        }
+        long live = spillLiveBytes;
+        closeSpillFile();
+        spillPath = newPath;
+        spillFile = newFile;
+        spillLiveBytes = live;
+    }
+
+    private void closeSpillFile() {
+        if (spillFile == null) return;
+        try {
+            spillFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        spillPath.delete();
+        spillFile = null;
+        spillPath = null;
+        spillLiveBytes = 0;
+        spillDeadBytes = 0;
+    }
+}
@@ -0,0 +1,95 @@
+package ms.paint;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+// --- KLASA POMOCNICZA: OPERACJE NA OBRAZIE BEZ INTERFEJSU GRAFICZNEGO (headless) ---
+// Wspólne API dla ImageProcessorApp i trybu wsadowego (BatchProcessor): przekształcenia punktowe,
+// skala szarości, konwolucja, Sobel i mediana. Wszystkie operacje zwracają nowy obraz
+// o typie źródła (TYPE_INT_RGB / TYPE_INT_ARGB - patrz RasterUtils.toIntRaster).
+class ImageOps {
+
+    @FunctionalInterface interface PointOperation { int apply(int colorValue, int value); }
+    @FunctionalInterface interface PointOperationFloat { int apply(int colorValue, float value); }
+    @FunctionalInterface interface GrayscaleOperation { int apply(int rgb); }
+    @FunctionalInterface interface ImageFilter { BufferedImage apply(BufferedImage source); }
+
+    static class FilterMasks {
+        public static final float[][] SMOOTHING_3X3 = { {1, 1, 1}, {1, 1, 1}, {1, 1, 1} };
+        public static final float[][] SHARPENING_3X3 = { {-1, -1, -1}, {-1, 9, -1}, {-1, -1, -1} };
+        public static final float[][] GAUSSIAN_3X3_UNNORM = { {1, 2, 1}, {2, 4, 2}, {1, 2, 1} };
+        public static final float[][] SOBEL_V = { {-1, 0, 1}, {-2, 0, 2}, {-1, 0, 1} };
+        public static final float[][] SOBEL_H = { {1, 2, 1}, {0, 0, 0}, {-1, -2, -1} };
+    }
+
+    private ImageOps() {
+    }
+
+    // Wczytanie pliku od razu do rastra int[]
+    static BufferedImage load(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Nieobsługiwany format pliku: " + file.getName());
+        }
+        return RasterUtils.toIntRaster(image);
+    }
+
+    // ************************************************************
+    // *** PRZEKSZTAŁCENIA PUNKTOWE ***
+    // ************************************************************
+
+    static int clamp(int value) { return Math.max(0, Math.min(255, value)); }
+    static int addValue(int colorValue, int value) { return clamp(colorValue + value); }
+    static int subtractValue(int colorValue, int value) { return clamp(colorValue - value); }
+    static int multiplyValue(int colorValue, float factor) { return clamp((int) (colorValue * factor)); }
+    static int divideValue(int colorValue, float divisor) { return (divisor == 0) ? 0 : clamp((int) (colorValue / divisor)); }
+    static int changeBrightness(int colorValue, int level) { return clamp(colorValue + level); }
+
+    static BufferedImage pointOps(BufferedImage source, PointOpPipeline pipeline) {
+        return pipeline.apply(source);
+    }
+
+    // ************************************************************
+    // *** SKALA SZAROŚCI ***
+    // ************************************************************
+
+    static int toGrayscaleAverage(int rgb) {
+        int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF; return (r + g + b) / 3;
+    }
+    static int toGrayscaleWeighted(int rgb) {
+        int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF; return (int) (0.2126 * r + 0.7152 * g + 0.0722 * b);
+    }
+
+    static BufferedImage grayscale(BufferedImage source, GrayscaleOperation operation) {
+        BufferedImage resultImage = RasterUtils.createCompatible(source);
+        int[] src = RasterUtils.pixels(source); int[] dst = RasterUtils.pixels(resultImage);
+        int w = source.getWidth();
+        RasterUtils.forEachRowBand(source.getHeight(), (yStart, yEnd) -> {
+            for (int i = yStart * w, end = yEnd * w; i < end; i++) {
+                int rgb = src[i];
+                int grayValue = operation.apply(rgb);
+                dst[i] = (rgb & 0xFF000000) | (grayValue << 16) | (grayValue << 8) | grayValue;
+            }
+        });
+        return resultImage;
+    }
+
+    // ************************************************************
+    // *** FILTRY ***
+    // ************************************************************
+
+    static BufferedImage convolve(BufferedImage source, float[][] kernel) {
+        return ConvolutionEngine.convolve(source, kernel);
+    }
+
+    // Silnik Sobela przechowuje bufor luminancji - przy wielu obrazach warto używać jednej instancji na wątek
+    static BufferedImage sobel(BufferedImage source, SobelEngine engine, SobelEngine.Magnitude magnitude) {
+        return engine.apply(source, magnitude);
+    }
+
+    static BufferedImage median(BufferedImage source, int size) {
+        return MedianEngine.median(source, size);
+    }
+}
@@ -12,16 +12,15 @@ import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.IIOImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class ImageProcessorApp extends JFrame {
 
     private BufferedImage originalImage;
     private BufferedImage processedImage;
-    private JLabel imageLabel;
+    private ZoomPanel imagePanel;
     private JScrollPane scrollPane;
     private JPanel mainControlPanel;
 
@@ -30,15 +29,27 @@ public class ImageProcessorApp extends JFrame {
     private JSlider compressionSlider;
     private JLabel qualityLabel;
     private double zoomFactor = 1.0;
+    private final SobelEngine sobelEngine = new SobelEngine();
+    private final PointOpPipeline pointPipeline = new PointOpPipeline();
+    private JCheckBox queuePointOpsCheckBox;
+    private JButton applyQueueButton;
+
+    private FilterTask currentTask;
+    // Budżet pamięci historii w MB, można zmienić: -Dgrafika.history.mb=...
+    private final ImageHistory history = new ImageHistory(Long.getLong("grafika.history.mb", 256L) * 1024 * 1024);
+    private JButton undoButton;
+    private JButton redoButton;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+    private JButton cancelButton;
 
     public ImageProcessorApp() {
         setTitle("Przetwarzanie Obrazów - Projekt (Finalny)");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout());
 
-        imageLabel = new JLabel("Brak wczytanego obrazu.");
-        imageLabel.setHorizontalAlignment(JLabel.CENTER);
-        scrollPane = new JScrollPane(imageLabel);
+        imagePanel = new ZoomPanel("Brak wczytanego obrazu.");
+        scrollPane = new JScrollPane(imagePanel);
         add(scrollPane, BorderLayout.CENTER);
 
         mainControlPanel = new JPanel();
@@ -51,6 +62,7 @@ public class ImageProcessorApp extends JFrame {
         addConvolutionFilterControls();
         addExportControls();
         addZoomControls();
+        addStatusBar();
 
         pack();
         setSize(1400, 900);
@@ -73,15 +85,36 @@ public class ImageProcessorApp extends JFrame {
         JButton resetButton = new JButton("Resetuj");
         resetButton.addActionListener(e -> {
             if (originalImage != null) {
-                processedImage = copyImage(originalImage);
+                pointPipeline.clear(); updateQueueButton();
                 zoomFactor = 1.0; // Reset zoomu przy resecie obrazu
-                displayImage(processedImage);
+                // Reset też trafia do historii, więc można go cofnąć
+                runFilter("Reset", source -> copyImage(originalImage));
             } else {
                 JOptionPane.showMessageDialog(this, "Brak oryginalnego obrazu do resetowania.", "Informacja", JOptionPane.INFORMATION_MESSAGE);
             }
         });
         loadPanel.add(resetButton);
 
+        undoButton = new JButton("Cofnij");
+        undoButton.addActionListener(e -> undo());
+        loadPanel.add(undoButton);
+
+        redoButton = new JButton("Ponów");
+        redoButton.addActionListener(e -> redo());
+        loadPanel.add(redoButton);
+        updateHistoryButtons();
+
+        // Skróty Ctrl+Z / Ctrl+Y
+        JRootPane root = getRootPane();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("control Z"), "undo");
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("control Y"), "redo");
+        root.getActionMap().put("undo", new AbstractAction() {
+            @Override public void actionPerformed(ActionEvent e) { undo(); }
+        });
+        root.getActionMap().put("redo", new AbstractAction() {
+            @Override public void actionPerformed(ActionEvent e) { redo(); }
+        });
+
         mainControlPanel.add(loadPanel);
         mainControlPanel.add(Box.createRigidArea(new Dimension(10, 0)));
     }
@@ -92,8 +125,12 @@ public class ImageProcessorApp extends JFrame {
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
             try {
-                originalImage = ImageIO.read(selectedFile);
+                // Obraz trzymany w rastrze int[], aby filtry mogły czytać DataBufferInt bezpośrednio
+                cancelCurrentTask();
+                originalImage = ImageOps.load(selectedFile);
                 processedImage = copyImage(originalImage);
+                history.clear(); updateHistoryButtons();
+                pointPipeline.clear(); updateQueueButton();
                 zoomFactor = 1.0; // Reset zoomu przy ładowaniu
                 displayImage(processedImage);
             } catch (IOException e) {
@@ -103,24 +140,30 @@ public class ImageProcessorApp extends JFrame {
     }
 
     private void displayImage(BufferedImage image) {
-        if (image != null) {
-            int newWidth = (int) (image.getWidth() * zoomFactor);
-            int newHeight = (int) (image.getHeight() * zoomFactor);
+        // Panel rysuje tylko widoczny fragment w bieżącym zoomie - bez przeskalowanej kopii obrazu
+        imagePanel.setImage(image, zoomFactor);
+        scrollPane.revalidate();
+    }
 
-            Image scaledImage = image.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
+    private void undo() {
+        if (!history.canUndo()) return;
+        cancelCurrentTask();
+        processedImage = history.undo(processedImage);
+        updateHistoryButtons();
+        displayImage(processedImage);
+    }
 
-            ImageIcon icon = new ImageIcon(scaledImage);
-            imageLabel.setIcon(icon);
-            imageLabel.setText("");
+    private void redo() {
+        if (!history.canRedo()) return;
+        cancelCurrentTask();
+        processedImage = history.redo(processedImage);
+        updateHistoryButtons();
+        displayImage(processedImage);
+    }
 
-            imageLabel.setPreferredSize(new Dimension(newWidth, newHeight));
-            imageLabel.revalidate();
-            imageLabel.repaint();
-            scrollPane.revalidate();
-        } else {
-            imageLabel.setIcon(null);
-            imageLabel.setText("Brak wczytanego obrazu.");
-        }
+    private void updateHistoryButtons() {
+        undoButton.setEnabled(history.canUndo());
+        redoButton.setEnabled(history.canRedo());
     }
 
     private BufferedImage copyImage(BufferedImage source) {
@@ -139,22 +182,6 @@ public class ImageProcessorApp extends JFrame {
         });
     }
 
-    // ************************************************************
-    // *** OBSŁUGA KRAWĘDZI (Replicate Padding) ***
-    // ************************************************************
-
-    private int clampCoordinate(int coord, int max) {
-        return Math.max(0, Math.min(max - 1, coord));
-    }
-
-    private int getSafeRGB(BufferedImage image, int x, int y) {
-        int w = image.getWidth();
-        int h = image.getHeight();
-        int safeX = clampCoordinate(x, w);
-        int safeY = clampCoordinate(y, h);
-        return image.getRGB(safeX, safeY);
-    }
-
     // ************************************************************
     // *** SEKCJA ZOOM ***
     // ************************************************************
@@ -234,99 +261,78 @@ public class ImageProcessorApp extends JFrame {
                 return;
             }
             switch (selectedOp) {
-                case "Dodawanie (+Int)": applyPointOp(valueField, this::addValue); break;
-                case "Odejmowanie (-Int)": applyPointOp(valueField, this::subtractValue); break;
-                case "Mnożenie (*Float)": applyPointOpFloat(factorField, this::multiplyValue); break;
-                case "Dzielenie (/Float)": applyPointOpFloat(factorField, this::divideValue); break;
-                case "Zmiana Jasności (+/-Int)": applyPointOp(valueField, this::changeBrightness); break;
-                case "Skala Szarości (Średnia)": applyGrayscale(this::toGrayscaleAverage); break;
-                case "Skala Szarości (Ważona)": applyGrayscale(this::toGrayscaleWeighted); break;
+                case "Dodawanie (+Int)": applyPointOp(valueField, ImageOps::addValue); break;
+                case "Odejmowanie (-Int)": applyPointOp(valueField, ImageOps::subtractValue); break;
+                case "Mnożenie (*Float)": applyPointOpFloat(factorField, ImageOps::multiplyValue); break;
+                case "Dzielenie (/Float)": applyPointOpFloat(factorField, ImageOps::divideValue); break;
+                case "Zmiana Jasności (+/-Int)": applyPointOp(valueField, ImageOps::changeBrightness); break;
+                case "Skala Szarości (Średnia)": applyGrayscale(ImageOps::toGrayscaleAverage); break;
+                case "Skala Szarości (Ważona)": applyGrayscale(ImageOps::toGrayscaleWeighted); break;
             }
             opComboBox.setSelectedIndex(0);
         });
         pointPanel.add(new JLabel("Operacja:"));
         pointPanel.add(opComboBox);
+
+        queuePointOpsCheckBox = new JCheckBox("Kolejkuj");
+        queuePointOpsCheckBox.setToolTipText("Operacje są składane w jedną tablicę LUT i stosowane razem");
+        pointPanel.add(queuePointOpsCheckBox);
+
+        applyQueueButton = new JButton();
+        applyQueueButton.addActionListener(e -> applyPointPipeline());
+        updateQueueButton();
+        pointPanel.add(applyQueueButton);
         mainControlPanel.add(pointPanel);
         mainControlPanel.add(Box.createRigidArea(new Dimension(10, 0)));
     }
 
-    @FunctionalInterface interface PointOperation { int apply(int colorValue, int value); }
-    @FunctionalInterface interface PointOperationFloat { int apply(int colorValue, float value); }
-    @FunctionalInterface interface GrayscaleOperation { int apply(int rgb); }
-
-    private void applyPointOp(JTextField field, PointOperation operation) {
+    private void applyPointOp(JTextField field, ImageOps.PointOperation operation) {
         if (processedImage == null) return;
         try {
             int value = Integer.parseInt(field.getText());
-            BufferedImage source = processedImage;
-            BufferedImage resultImage = copyImage(source);
-            int w = resultImage.getWidth(); int h = resultImage.getHeight();
-            for (int y = 0; y < h; y++) {
-                for (int x = 0; x < w; x++) {
-                    int rgb = source.getRGB(x, y);
-                    int a = (rgb >> 24) & 0xFF; int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF;
-                    r = operation.apply(r, value); g = operation.apply(g, value); b = operation.apply(b, value);
-                    int newRgb = (a << 24) | (r << 16) | (g << 8) | b;
-                    resultImage.setRGB(x, y, newRgb);
-                }
-            }
-            processedImage = resultImage; displayImage(processedImage);
+            pointPipeline.add(operation, value);
+            onPointOpQueued();
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Wprowadź poprawną wartość całkowitą dla operacji.", "Błąd", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    private void applyPointOpFloat(JTextField field, PointOperationFloat operation) {
+    private void applyPointOpFloat(JTextField field, ImageOps.PointOperationFloat operation) {
         if (processedImage == null) return;
         try {
             float value = Float.parseFloat(field.getText());
-            BufferedImage source = processedImage;
-            BufferedImage resultImage = copyImage(source);
-            int w = resultImage.getWidth(); int h = resultImage.getHeight();
-            for (int y = 0; y < h; y++) {
-                for (int x = 0; x < w; x++) {
-                    int rgb = source.getRGB(x, y);
-                    int a = (rgb >> 24) & 0xFF; int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF;
-                    r = operation.apply(r, value); g = operation.apply(g, value); b = operation.apply(b, value);
-                    int newRgb = (a << 24) | (r << 16) | (g << 8) | b;
-                    resultImage.setRGB(x, y, newRgb);
-                }
-            }
-            processedImage = resultImage; displayImage(processedImage);
+            pointPipeline.addFloat(operation, value);
+            onPointOpQueued();
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Wprowadź poprawną wartość zmiennoprzecinkową dla operacji.", "Błąd", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    private int clamp(int value) { return Math.max(0, Math.min(255, value)); }
-    private int addValue(int colorValue, int value) { return clamp(colorValue + value); }
-    private int subtractValue(int colorValue, int value) { return clamp(colorValue - value); }
-    private int multiplyValue(int colorValue, float factor) { return clamp((int) (colorValue * factor)); }
-    private int divideValue(int colorValue, float divisor) { return (divisor == 0) ? 0 : clamp((int) (colorValue / divisor)); }
-    private int changeBrightness(int colorValue, int level) { return clamp(colorValue + level); }
-
-    private void applyGrayscale(GrayscaleOperation operation) {
-        if (processedImage == null) return;
-        BufferedImage source = processedImage;
-        BufferedImage resultImage = copyImage(source);
-        int w = resultImage.getWidth(); int h = resultImage.getHeight();
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int rgb = source.getRGB(x, y);
-                int grayValue = operation.apply(rgb);
-                int a = (rgb >> 24) & 0xFF;
-                int newRgb = (a << 24) | (grayValue << 16) | (grayValue << 8) | grayValue;
-                resultImage.setRGB(x, y, newRgb);
-            }
+    // Bez kolejkowania operacja jest stosowana od razu; z kolejkowaniem czeka na "Zastosuj kolejkę"
+    private void onPointOpQueued() {
+        if (queuePointOpsCheckBox.isSelected()) {
+            updateQueueButton();
+        } else {
+            applyPointPipeline();
         }
-        processedImage = resultImage; displayImage(processedImage);
     }
 
-    private int toGrayscaleAverage(int rgb) {
-        int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF; return (r + g + b) / 3;
+    private void applyPointPipeline() {
+        if (processedImage == null || pointPipeline.isEmpty()) return;
+        // Wszystkie operacje z kolejki złożone w jedną tablicę LUT - jedno przejście po rastrze
+        PointOpPipeline snapshot = pointPipeline.copy();
+        pointPipeline.clear();
+        updateQueueButton();
+        runFilter("Przekształcenia punktowe (" + snapshot.size() + ")", source -> ImageOps.pointOps(source, snapshot));
     }
-    private int toGrayscaleWeighted(int rgb) {
-        int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF; return (int) (0.2126 * r + 0.7152 * g + 0.0722 * b);
+
+    private void updateQueueButton() {
+        applyQueueButton.setText("Zastosuj kolejkę (" + pointPipeline.size() + ")");
+        applyQueueButton.setEnabled(!pointPipeline.isEmpty());
+    }
+
+    private void applyGrayscale(ImageOps.GrayscaleOperation operation) {
+        runFilter("Skala szarości", source -> ImageOps.grayscale(source, operation));
     }
 
     // ************************************************************
@@ -334,12 +340,13 @@ public class ImageProcessorApp extends JFrame {
     // ************************************************************
 
     private static final String CUSTOM_MASK_ACTION = "Własna Maska (Opcjonalne)";
+    private static final String MEDIAN_SIZE_ACTION = "Filtr Medianowy (NxN)";
 
     private void addConvolutionFilterControls() {
         JPanel filterPanel = createTitledPanel("b. Filtry Konwolucyjne");
         String[] filterNames = {
-                "Wybierz Filtr...", "Wygładzający (Średnia)", "Filtr Medianowy (3x3)",
-                "Wykrywanie Krawędzi (Sobel)", "Wyostrzający (Górnoprzepustowy)", "Rozmycie Gaussa", CUSTOM_MASK_ACTION
+                "Wybierz Filtr...", "Wygładzający (Średnia)", "Filtr Medianowy (3x3)", MEDIAN_SIZE_ACTION,
+                "Wykrywanie Krawędzi (Sobel)", "Wykrywanie Krawędzi (Sobel L1)", "Wyostrzający (Górnoprzepustowy)", "Rozmycie Gaussa", CUSTOM_MASK_ACTION
         };
         JComboBox<String> filterComboBox = new JComboBox<>(filterNames);
         filterComboBox.addActionListener(e -> {
@@ -350,11 +357,13 @@ public class ImageProcessorApp extends JFrame {
                 return;
             }
             switch (selectedFilter) {
-                case "Wygładzający (Średnia)": applyFilter(FilterMasks.SMOOTHING_3X3); break;
+                case "Wygładzający (Średnia)": applyFilter(ImageOps.FilterMasks.SMOOTHING_3X3); break;
                 case "Filtr Medianowy (3x3)": applyMedianFilter(3); break;
-                case "Wykrywanie Krawędzi (Sobel)": applySobelFilter(); break;
-                case "Wyostrzający (Górnoprzepustowy)": applyFilter(FilterMasks.SHARPENING_3X3); break;
-                case "Rozmycie Gaussa": applyFilter(FilterMasks.GAUSSIAN_3X3_UNNORM); break;
+                case MEDIAN_SIZE_ACTION: showMedianSizeDialog(); break;
+                case "Wykrywanie Krawędzi (Sobel)": applySobelFilter(SobelEngine.Magnitude.L2); break;
+                case "Wykrywanie Krawędzi (Sobel L1)": applySobelFilter(SobelEngine.Magnitude.L1); break;
+                case "Wyostrzający (Górnoprzepustowy)": applyFilter(ImageOps.FilterMasks.SHARPENING_3X3); break;
+                case "Rozmycie Gaussa": applyFilter(ImageOps.FilterMasks.GAUSSIAN_3X3_UNNORM); break;
                 case CUSTOM_MASK_ACTION: showCustomMaskDialog(); break;
             }
             if (!selectedFilter.equals(CUSTOM_MASK_ACTION)) { filterComboBox.setSelectedIndex(0); }
@@ -364,139 +373,41 @@ public class ImageProcessorApp extends JFrame {
         mainControlPanel.add(filterPanel);
     }
 
-    private static class FilterMasks {
-        public static final float[][] SMOOTHING_3X3 = { {1, 1, 1}, {1, 1, 1}, {1, 1, 1} };
-        public static final float[][] SHARPENING_3X3 = { {-1, -1, -1}, {-1, 9, -1}, {-1, -1, -1} };
-        public static final float[][] GAUSSIAN_3X3_UNNORM = { {1, 2, 1}, {2, 4, 2}, {1, 2, 1} };
-        public static final float[][] SOBEL_V = { {-1, 0, 1}, {-2, 0, 2}, {-1, 0, 1} };
-        public static final float[][] SOBEL_H = { {1, 2, 1}, {0, 0, 0}, {-1, -2, -1} };
-    }
-
     private void applyFilter(float[][] kernel) {
-        if (processedImage == null) return;
-        BufferedImage source = processedImage;
-        BufferedImage resultImage = copyImage(source);
-        int kWidth = kernel[0].length; int kHeight = kernel.length;
-        int halfKWidth = kWidth / 2; int halfKHeight = kHeight / 2;
-        int w = source.getWidth(); int h = source.getHeight();
-
-        float sumOfWeights = 0;
-        for (float[] row : kernel) { for (float weight : row) { sumOfWeights += weight; } }
-        float finalDivisor = (Math.abs(sumOfWeights) < 0.001f) ? 1.0f : sumOfWeights;
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                float rSum = 0; float gSum = 0; float bSum = 0;
-                for (int ky = 0; ky < kHeight; ky++) {
-                    for (int kx = 0; kx < kWidth; kx++) {
-                        int pixelX = x + kx - halfKWidth;
-                        int pixelY = y + ky - halfKHeight;
-                        int rgb = getSafeRGB(source, pixelX, pixelY); // Bezpieczny odczyt z krawędzi
-
-                        int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF;
-                        float weight = kernel[ky][kx];
-                        rSum += r * weight; gSum += g * weight; bSum += b * weight;
-                    }
-                }
-
-                int newR = clamp((int) (rSum / finalDivisor));
-                int newG = clamp((int) (gSum / finalDivisor));
-                int newB = clamp((int) (bSum / finalDivisor));
-
-                int a = (source.getRGB(x, y) >> 24) & 0xFF;
-                int newRgb = (a << 24) | (newR << 16) | (newG << 8) | newB;
-                resultImage.setRGB(x, y, newRgb);
-            }
-        }
-        processedImage = resultImage; displayImage(processedImage);
+        // Równoległa konwolucja na DataBufferInt (pasy wierszy w ForkJoinPool)
+        runFilter("Konwolucja " + kernel.length + "x" + kernel[0].length, source -> ImageOps.convolve(source, kernel));
     }
 
-    private void applySobelFilter() {
-        if (processedImage == null) return;
-        BufferedImage source = processedImage;
-        BufferedImage grayImage = copyImage(source);
-        int w = grayImage.getWidth(); int h = grayImage.getHeight();
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int rgb = grayImage.getRGB(x, y);
-                int grayValue = toGrayscaleWeighted(rgb);
-                int a = (rgb >> 24) & 0xFF;
-                int newRgb = (a << 24) | (grayValue << 16) | (grayValue << 8) | grayValue;
-                grayImage.setRGB(x, y, newRgb);
-            }
-        }
-
-        BufferedImage resultImage = copyImage(grayImage);
-        float[][] kx = FilterMasks.SOBEL_V; float[][] ky = FilterMasks.SOBEL_H;
-        int kSize = 3; int halfK = kSize / 2;
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                float gx = 0; float gy = 0;
-                for (int ky_i = 0; ky_i < kSize; ky_i++) {
-                    for (int kx_i = 0; kx_i < kSize; kx_i++) {
-                        int pixelX = x + kx_i - halfK;
-                        int pixelY = y + ky_i - halfK;
-
-                        int rgb = getSafeRGB(grayImage, pixelX, pixelY); // Bezpieczny odczyt z krawędzi
-
-                        int grayValue = (rgb >> 16) & 0xFF;
-                        gx += grayValue * kx[ky_i][kx_i];
-                        gy += grayValue * ky[ky_i][kx_i];
-                    }
-                }
-                int magnitude = (int) Math.sqrt(gx * gx + gy * gy);
-                int finalValue = clamp(magnitude);
-                int a = (grayImage.getRGB(x, y) >> 24) & 0xFF;
-                int newRgb = (a << 24) | (finalValue << 16) | (finalValue << 8) | finalValue;
-                resultImage.setRGB(x, y, newRgb);
-            }
-        }
-        processedImage = resultImage; displayImage(processedImage);
+    private void applySobelFilter(SobelEngine.Magnitude magnitude) {
+        // Luminancja do wspólnego bufora byte[] i całkowitoliczbowe gx/gy - bez kopii pośrednich
+        runFilter("Sobel " + magnitude, source -> ImageOps.sobel(source, sobelEngine, magnitude));
     }
 
     private void applyMedianFilter(int size) {
-        if (processedImage == null) return;
-        BufferedImage source = processedImage;
-        BufferedImage resultImage = copyImage(source);
-        int halfSize = size / 2;
-        int w = source.getWidth(); int h = source.getHeight();
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                List<Integer> rValues = new ArrayList<>();
-                List<Integer> gValues = new ArrayList<>();
-                List<Integer> bValues = new ArrayList<>();
-
-                for (int ky = 0; ky < size; ky++) {
-                    for (int kx = 0; kx < size; kx++) {
-                        int pixelX = x + kx - halfSize;
-                        int pixelY = y + ky - halfSize;
-
-                        int rgb = getSafeRGB(source, pixelX, pixelY); // Bezpieczny odczyt z krawędzi
-
-                        rValues.add((rgb >> 16) & 0xFF);
-                        gValues.add((rgb >> 8) & 0xFF);
-                        bValues.add(rgb & 0xFF);
-                    }
-                }
-
-                Collections.sort(rValues);
-                Collections.sort(gValues);
-                Collections.sort(bValues);
+        // Histogramy przesuwne - koszt na piksel niezależny od rozmiaru okna
+        runFilter("Mediana " + size + "x" + size, source -> ImageOps.median(source, size));
+    }
 
-                int medianIndex = rValues.size() / 2;
-                int newR = rValues.get(medianIndex);
-                int newG = gValues.get(medianIndex);
-                int newB = bValues.get(medianIndex);
+    private void showMedianSizeDialog() {
+        if (processedImage == null) {
+            JOptionPane.showMessageDialog(this, "Wczytaj obraz przed aplikacją filtru.", "Błąd", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String sizeInput = JOptionPane.showInputDialog(this,
+                "Wprowadź nieparzysty rozmiar okna mediany (np. 3, 5, 15, 51):",
+                "Rozmiar Okna Mediany", JOptionPane.PLAIN_MESSAGE);
 
-                int a = (source.getRGB(x, y) >> 24) & 0xFF;
-                int newRgb = (a << 24) | (newR << 16) | (newG << 8) | newB;
-                resultImage.setRGB(x, y, newRgb);
+        if (sizeInput == null || sizeInput.trim().isEmpty()) return;
+        try {
+            int size = Integer.parseInt(sizeInput.trim());
+            if (size <= 1 || size % 2 == 0) {
+                JOptionPane.showMessageDialog(this, "Rozmiar musi być nieparzysty i większy niż 1.", "Błąd Rozmiaru", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            applyMedianFilter(size);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Niepoprawny format rozmiaru.", "Błąd", JOptionPane.ERROR_MESSAGE);
         }
-        processedImage = resultImage; displayImage(processedImage);
     }
 
     private void showCustomMaskDialog() {
@@ -559,6 +470,116 @@ public class ImageProcessorApp extends JFrame {
         }
     }
 
+    // ************************************************************
+    // *** WYKONANIE W TLE (SwingWorker + postęp pasów) ***
+    // ************************************************************
+
+    private void addStatusBar() {
+        JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 2));
+        statusLabel = new JLabel("Gotowe.");
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        cancelButton = new JButton("Anuluj");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> {
+            cancelCurrentTask();
+            statusLabel.setText("Anulowano.");
+        });
+        statusPanel.add(statusLabel);
+        statusPanel.add(progressBar);
+        statusPanel.add(cancelButton);
+        add(statusPanel, BorderLayout.SOUTH);
+    }
+
+    // Uruchamia filtr poza EDT. Zadanie jeszcze trwające jest anulowane - nowy filtr je zastępuje
+    // i działa na tym samym obrazie wejściowym.
+    private void runFilter(String name, ImageOps.ImageFilter filter) {
+        if (processedImage == null) return;
+        cancelCurrentTask();
+        FilterTask task = new FilterTask(name, processedImage, filter);
+        currentTask = task;
+        statusLabel.setText("Przetwarzanie: " + name);
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        cancelButton.setEnabled(true);
+        task.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName()) && task == currentTask) {
+                progressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+        task.execute();
+    }
+
+    private void cancelCurrentTask() {
+        if (currentTask != null) {
+            currentTask.cancelJob();
+            currentTask = null;
+        }
+        progressBar.setVisible(false);
+        cancelButton.setEnabled(false);
+    }
+
+    // Klasa wewnętrzna SwingWorker - obliczenia na pasach wierszy, postęp zgłaszany przez BandProgress
+    private class FilterTask extends SwingWorker<BufferedImage, Void> {
+
+        private final String name;
+        private final BufferedImage source;
+        private final ImageOps.ImageFilter filter;
+        private final RasterUtils.BandProgress progress;
+        private ImageHistory.Delta delta;
+
+        FilterTask(String name, BufferedImage source, ImageOps.ImageFilter filter) {
+            this.name = name;
+            this.source = source;
+            this.filter = filter;
+            // setProgress jest bezpieczne wątkowo i łączy częste aktualizacje
+            this.progress = new RasterUtils.BandProgress(percent -> setProgress(Math.min(100, percent)));
+        }
+
+        void cancelJob() {
+            // Pasy sprawdzają flagę przed startem, więc obliczenia kończą się po bieżących pasach
+            progress.cancel();
+            cancel(false);
+        }
+
+        @Override
+        protected BufferedImage doInBackground() {
+            BufferedImage result = RasterUtils.withProgress(progress, () -> filter.apply(source));
+            // Różnica do historii liczona jeszcze w tle, żeby nie obciążać EDT, ale poza withProgress -
+            // jej przejście po pasach zaczynałoby pasek postępu od nowa
+            delta = ImageHistory.diff(source, result);
+            return result;
+        }
+
+        @Override
+        protected void done() {
+            // Zadanie zastąpione przez nowsze lub anulowane - wynik nie trafia do obrazu
+            if (isCancelled() || this != currentTask) return;
+            currentTask = null;
+            progressBar.setVisible(false);
+            cancelButton.setEnabled(false);
+            try {
+                processedImage = get();
+                history.push(delta);
+                updateHistoryButtons();
+                displayImage(processedImage);
+                statusLabel.setText("Gotowe: " + name);
+            } catch (InterruptedException | CancellationException e) {
+                statusLabel.setText("Anulowano.");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    statusLabel.setText("Anulowano.");
+                    return;
+                }
+                e.printStackTrace();
+                statusLabel.setText("Błąd: " + name);
+                JOptionPane.showMessageDialog(ImageProcessorApp.this,
+                        "Wystąpił błąd podczas przetwarzania: " + e.getCause().getMessage(), "Błąd", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
     // ************************************************************
     // *** SEKCJA EKSPORTU: Kompresja JPG ***
     // ************************************************************
@@ -0,0 +1,174 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// --- KLASA POMOCNICZA: FILTR MEDIANOWY O STAŁYM KOSZCIE (Perreault-Hébert) ---
+// Dla każdej kolumny trzymamy histogram (256 kubełków na kanał) wartości z okna pionowego.
+// Przesunięcie w dół to jedno dodanie i jedno usunięcie na kolumnę, a przesunięcie okna w prawo
+// to dodanie i odjęcie dwóch histogramów kolumn. Koszt na piksel nie zależy od rozmiaru okna,
+// a w pętli wewnętrznej nie powstają żadne obiekty.
+// Mediana jest szukana najpierw w histogramie zgrubnym (16 kubełków), potem w dokładnym.
+// Histogram zgrubny okna jest aktualizowany przy każdym kroku, a 16-elementowe segmenty
+// histogramu dokładnego dopiero wtedy, gdy wyszukiwanie mediany do nich trafia.
+class MedianEngine {
+
+    private static final int BINS = 256;
+    private static final int COARSE_BINS = 16;
+    private static final int CHANNELS = 3;
+    private static final int SEGMENT = BINS / COARSE_BINS;
+    // Minimalna szerokość kafla kolumn - ogranicza pamięć histogramów kolumn w jednym pasie
+    private static final int MIN_TILE_WIDTH = 256;
+
+    private MedianEngine() {
+    }
+
+    static BufferedImage median(BufferedImage source, int size) {
+        BufferedImage resultImage = RasterUtils.createCompatible(source);
+        median(RasterUtils.pixels(source), RasterUtils.pixels(resultImage),
+                source.getWidth(), source.getHeight(), size);
+        return resultImage;
+    }
+
+    static void median(int[] src, int[] dst, int w, int h, int size) {
+        if (size < 1 || size % 2 == 0) {
+            throw new IllegalArgumentException("Rozmiar okna musi być nieparzysty: " + size);
+        }
+        int radius = size / 2;
+        // Ta sama pozycja co element size*size/2 posortowanej listy w poprzedniej implementacji
+        int medianRank = (size * size) / 2;
+
+        // Pas musi być wyraźnie wyższy niż okno, inaczej koszt inicjalizacji histogramów dominuje
+        RasterUtils.forEachRowBand(h, Math.max(RasterUtils.MIN_BAND_HEIGHT, 2 * size), (yStart, yEnd) -> {
+            // Kafel co najmniej 2x szerszy niż okno, aby narzut brzegów kafla pozostał stały
+            int tileWidth = Math.max(MIN_TILE_WIDTH, 2 * size);
+            int maxColumns = Math.min(w, tileWidth + 2 * radius);
+            int[] columnFine = new int[maxColumns * CHANNELS * BINS];
+            int[] columnCoarse = new int[maxColumns * CHANNELS * COARSE_BINS];
+            int[] kernelFine = new int[CHANNELS * BINS];
+            int[] kernelCoarse = new int[CHANNELS * COARSE_BINS];
+            // Pozycja x, dla której segment histogramu dokładnego okna był ostatnio aktualny
+            int[] segmentX = new int[CHANNELS * COARSE_BINS];
+
+            for (int tileStart = 0; tileStart < w; tileStart += tileWidth) {
+                int tileEnd = Math.min(w, tileStart + tileWidth);
+                // Kolumny źródłowe potrzebne dla kafla (po przycięciu do obrazu)
+                int colFirst = Math.max(0, tileStart - radius);
+                int colLast = Math.min(w - 1, tileEnd - 1 + radius);
+                int columns = colLast - colFirst + 1;
+
+                Arrays.fill(columnFine, 0, columns * CHANNELS * BINS, 0);
+                Arrays.fill(columnCoarse, 0, columns * CHANNELS * COARSE_BINS, 0);
+                for (int ky = -radius; ky <= radius; ky++) {
+                    int rowOffset = clamp(yStart + ky, h) * w;
+                    for (int c = 0; c < columns; c++) {
+                        addPixel(columnFine, columnCoarse, c, src[rowOffset + colFirst + c], 1);
+                    }
+                }
+
+                for (int y = yStart; y < yEnd; y++) {
+                    if (y > yStart) {
+                        // Przesunięcie okna pionowego: usuwamy wiersz y-1-r, dodajemy wiersz y+r
+                        int removeOffset = clamp(y - 1 - radius, h) * w;
+                        int addOffset = clamp(y + radius, h) * w;
+                        for (int c = 0; c < columns; c++) {
+                            addPixel(columnFine, columnCoarse, c, src[removeOffset + colFirst + c], -1);
+                            addPixel(columnFine, columnCoarse, c, src[addOffset + colFirst + c], 1);
+                        }
+                    }
+
+                    // Na początku wiersza wszystkie segmenty dokładne są nieaktualne
+                    Arrays.fill(kernelCoarse, 0);
+                    Arrays.fill(segmentX, Integer.MIN_VALUE / 2);
+                    for (int kx = -radius; kx <= radius; kx++) {
+                        addCoarseColumn(kernelCoarse, columnCoarse, clamp(tileStart + kx, w) - colFirst, 1);
+                    }
+
+                    int rowBase = y * w;
+                    for (int x = tileStart; x < tileEnd; x++) {
+                        if (x > tileStart) {
+                            addCoarseColumn(kernelCoarse, columnCoarse, clamp(x - 1 - radius, w) - colFirst, -1);
+                            addCoarseColumn(kernelCoarse, columnCoarse, clamp(x + radius, w) - colFirst, 1);
+                        }
+                        int newR = findMedian(kernelFine, kernelCoarse, columnFine, segmentX, 0, x, radius, w, colFirst, medianRank);
+                        int newG = findMedian(kernelFine, kernelCoarse, columnFine, segmentX, 1, x, radius, w, colFirst, medianRank);
+                        int newB = findMedian(kernelFine, kernelCoarse, columnFine, segmentX, 2, x, radius, w, colFirst, medianRank);
+                        dst[rowBase + x] = (src[rowBase + x] & 0xFF000000) | (newR << 16) | (newG << 8) | newB;
+                    }
+                }
+            }
+        });
+    }
+
+    private static int clamp(int coord, int max) {
+        return Math.max(0, Math.min(max - 1, coord));
+    }
+
+    private static void addPixel(int[] fine, int[] coarse, int column, int rgb, int delta) {
+        int fineBase = column * CHANNELS * BINS;
+        int coarseBase = column * CHANNELS * COARSE_BINS;
+        int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF;
+        fine[fineBase + r] += delta;
+        fine[fineBase + BINS + g] += delta;
+        fine[fineBase + 2 * BINS + b] += delta;
+        coarse[coarseBase + (r >> 4)] += delta;
+        coarse[coarseBase + COARSE_BINS + (g >> 4)] += delta;
+        coarse[coarseBase + 2 * COARSE_BINS + (b >> 4)] += delta;
+    }
+
+    private static void addCoarseColumn(int[] kernelCoarse, int[] columnCoarse, int column, int sign) {
+        int coarseBase = column * CHANNELS * COARSE_BINS;
+        for (int i = 0; i < CHANNELS * COARSE_BINS; i++) {
+            kernelCoarse[i] += sign * columnCoarse[coarseBase + i];
+        }
+    }
+
+    // Doprowadza segment 'bucket' histogramu dokładnego okna do pozycji x: przyrostowo
+    // (kolumny wchodzące i wychodzące), albo od zera, jeśli segment był aktualny dawno temu
+    private static void syncSegment(int[] kernelFine, int[] columnFine, int[] segmentX, int channel, int bucket,
+                                    int x, int radius, int w, int colFirst) {
+        int key = channel * COARSE_BINS + bucket;
+        int lastX = segmentX[key];
+        if (lastX == x) return;
+        int kernelBase = channel * BINS + bucket * SEGMENT;
+        int columnOffset = channel * BINS + bucket * SEGMENT;
+        if (x - lastX <= 2 * radius + 1) {
+            for (int p = lastX + 1; p <= x; p++) {
+                int removeBase = (clamp(p - 1 - radius, w) - colFirst) * CHANNELS * BINS + columnOffset;
+                int addBase = (clamp(p + radius, w) - colFirst) * CHANNELS * BINS + columnOffset;
+                for (int i = 0; i < SEGMENT; i++) {
+                    kernelFine[kernelBase + i] += columnFine[addBase + i] - columnFine[removeBase + i];
+                }
+            }
+        } else {
+            Arrays.fill(kernelFine, kernelBase, kernelBase + SEGMENT, 0);
+            for (int kx = -radius; kx <= radius; kx++) {
+                int addBase = (clamp(x + kx, w) - colFirst) * CHANNELS * BINS + columnOffset;
+                for (int i = 0; i < SEGMENT; i++) {
+                    kernelFine[kernelBase + i] += columnFine[addBase + i];
+                }
+            }
+        }
+        segmentX[key] = x;
+    }
+
+    // Najmniejsza wartość, dla której liczba próbek <= wartość przekracza rank
+    private static int findMedian(int[] kernelFine, int[] kernelCoarse, int[] columnFine, int[] segmentX,
+                                  int channel, int x, int radius, int w, int colFirst, int rank) {
+        int coarseBase = channel * COARSE_BINS;
+        int count = 0;
+        int bucket = 0;
+        while (count + kernelCoarse[coarseBase + bucket] <= rank) {
+            count += kernelCoarse[coarseBase + bucket];
+            bucket++;
+        }
+        syncSegment(kernelFine, columnFine, segmentX, channel, bucket, x, radius, w, colFirst);
+        int fineBase = channel * BINS;
+        int value = bucket * SEGMENT;
+        while (count + kernelFine[fineBase + value] <= rank) {
+            count += kernelFine[fineBase + value];
+            value++;
+        }
+        return value;
+    }
+}
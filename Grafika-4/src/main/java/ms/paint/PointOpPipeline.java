@@ -0,0 +1,66 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+
+// --- KLASA POMOCNICZA: POTOK PRZEKSZTAŁCEŃ PUNKTOWYCH SKOMPILOWANY DO JEDNEJ TABLICY LUT ---
+// Każda dodana operacja jest od razu składana z dotychczasową tablicą 256 wartości,
+// więc N kolejnych korekt kosztuje jedno przejście po rastrze int[] zamiast N kopii obrazu.
+// Operacje przycinają wynik do [0, 255] po każdym kroku, tak jak przy stosowaniu ich osobno.
+class PointOpPipeline {
+
+    private final int[] lut = new int[256];
+    private int steps;
+
+    PointOpPipeline() {
+        clear();
+    }
+
+    void clear() {
+        for (int i = 0; i < 256; i++) lut[i] = i;
+        steps = 0;
+    }
+
+    PointOpPipeline add(ImageOps.PointOperation operation, int value) {
+        for (int i = 0; i < 256; i++) lut[i] = operation.apply(lut[i], value);
+        steps++;
+        return this;
+    }
+
+    PointOpPipeline addFloat(ImageOps.PointOperationFloat operation, float value) {
+        for (int i = 0; i < 256; i++) lut[i] = operation.apply(lut[i], value);
+        steps++;
+        return this;
+    }
+
+    // Niezależna kopia - potok można dalej uzupełniać, gdy kopia jest stosowana w tle
+    PointOpPipeline copy() {
+        PointOpPipeline copy = new PointOpPipeline();
+        System.arraycopy(lut, 0, copy.lut, 0, lut.length);
+        copy.steps = steps;
+        return copy;
+    }
+
+    int size() {
+        return steps;
+    }
+
+    boolean isEmpty() {
+        return steps == 0;
+    }
+
+    BufferedImage apply(BufferedImage source) {
+        BufferedImage resultImage = RasterUtils.createCompatible(source);
+        applyLut(RasterUtils.pixels(source), RasterUtils.pixels(resultImage), source.getWidth(), source.getHeight(), lut);
+        return resultImage;
+    }
+
+    // Ta sama tablica dla kanałów R, G i B; kanał alfa bez zmian
+    static void applyLut(int[] src, int[] dst, int w, int h, int[] lut) {
+        RasterUtils.forEachRowBand(h, (yStart, yEnd) -> {
+            for (int i = yStart * w, end = yEnd * w; i < end; i++) {
+                int rgb = src[i];
+                dst[i] = (rgb & 0xFF000000) | (lut[(rgb >> 16) & 0xFF] << 16) | (lut[(rgb >> 8) & 0xFF] << 8) | lut[rgb & 0xFF];
+            }
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package ms.paint;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+// --- KLASA POMOCNICZA: BEZPOŚREDNI DOSTĘP DO RASTRA I PODZIAŁ NA PASY WIERSZY ---
+class RasterUtils {
+
+    // Minimalna liczba wierszy w jednym pasie - mniejsze pasy nie opłacają się przy podziale zadań
+    static final int MIN_BAND_HEIGHT = 16;
+
+    @FunctionalInterface
+    interface RowBandTask {
+        // Przetwarza wiersze [yStart, yEnd)
+        void run(int yStart, int yEnd);
+    }
+
+    // Postęp i anulowanie dla zadania wykonywanego w tle (np. z SwingWorkera).
+    // Pasy zgłaszają ukończone wiersze, a przed startem pasa sprawdzają, czy zadanie nie zostało anulowane.
+    static class BandProgress {
+        private final IntConsumer percentListener;
+        private final AtomicInteger doneRows = new AtomicInteger();
+        private volatile int passRows = 1;
+        private volatile boolean cancelled;
+
+        BandProgress(IntConsumer percentListener) {
+            this.percentListener = percentListener;
+        }
+
+        void cancel() { cancelled = true; }
+
+        boolean isCancelled() { return cancelled; }
+
+        // Każde wywołanie forEachRowBand to osobne przejście liczone od 0 do 100%
+        private void startPass(int height) {
+            passRows = Math.max(1, height);
+            doneRows.set(0);
+            percentListener.accept(0);
+        }
+
+        private void checkCancelled() {
+            if (cancelled) throw new CancellationException("Zadanie anulowane");
+        }
+
+        private void bandDone(int rows) {
+            percentListener.accept((int) ((long) doneRows.addAndGet(rows) * 100 / passRows));
+        }
+    }
+
+    private static final ThreadLocal<BandProgress> CURRENT_PROGRESS = new ThreadLocal<>();
+
+    private RasterUtils() {
+    }
+
+    // Wykonuje zadanie na bieżącym wątku, podpinając postęp pod wszystkie wywołania forEachRowBand wewnątrz
+    static <T> T withProgress(BandProgress progress, Supplier<T> job) {
+        BandProgress previous = CURRENT_PROGRESS.get();
+        CURRENT_PROGRESS.set(progress);
+        try {
+            return job.get();
+        } finally {
+            CURRENT_PROGRESS.set(previous);
+        }
+    }
+
+    // Sprowadza obraz do typu z tablicą int[] (TYPE_INT_RGB / TYPE_INT_ARGB), aby filtry mogły
+    // pracować bezpośrednio na DataBufferInt zamiast na getRGB/setRGB.
+    static BufferedImage toIntRaster(BufferedImage source) {
+        if (source == null) return null;
+        int type = source.getType();
+        if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+            return source;
+        }
+        int targetType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), targetType);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(source, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    // Tablica pikseli ARGB leżąca pod obrazem (bez kopiowania)
+    static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    // Nowy, pusty obraz o tym samym rozmiarze i typie co źródło
+    static BufferedImage createCompatible(BufferedImage source) {
+        return new BufferedImage(source.getWidth(), source.getHeight(), source.getType());
+    }
+
+    // Dzieli wiersze [0, height) na pasy i wykonuje je równolegle w ForkJoinPool
+    static void forEachRowBand(int height, RowBandTask task) {
+        forEachRowBand(height, MIN_BAND_HEIGHT, task);
+    }
+
+    // Wariant z własną minimalną wysokością pasa - dla filtrów, których koszt startu pasa rośnie z rozmiarem okna
+    static void forEachRowBand(int height, int minBandHeight, RowBandTask task) {
+        if (height <= 0) return;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int bandHeight = Math.max(minBandHeight, (height + parallelism * 4 - 1) / (parallelism * 4));
+        // Postęp pobrany z wątku wywołującego - wątki ForkJoinPool go nie widzą
+        BandProgress progress = CURRENT_PROGRESS.get();
+        if (progress != null) progress.startPass(height);
+        if (height <= bandHeight) {
+            runBand(task, 0, height, progress);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new RowBandAction(task, 0, height, bandHeight, progress));
+    }
+
+    private static void runBand(RowBandTask task, int yStart, int yEnd, BandProgress progress) {
+        if (progress == null) {
+            task.run(yStart, yEnd);
+            return;
+        }
+        progress.checkCancelled();
+        task.run(yStart, yEnd);
+        progress.bandDone(yEnd - yStart);
+    }
+
+    private static class RowBandAction extends RecursiveAction {
+        private final RowBandTask task;
+        private final int yStart;
+        private final int yEnd;
+        private final int bandHeight;
+        private final BandProgress progress;
+
+        RowBandAction(RowBandTask task, int yStart, int yEnd, int bandHeight, BandProgress progress) {
+            this.task = task;
+            this.yStart = yStart;
+            this.yEnd = yEnd;
+            this.bandHeight = bandHeight;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (yEnd - yStart <= bandHeight) {
+                runBand(task, yStart, yEnd, progress);
+                return;
+            }
+            // Podział w miejscu wyrównanym do wysokości pasa
+            int bands = (yEnd - yStart + bandHeight - 1) / bandHeight;
+            int mid = yStart + (bands / 2) * bandHeight;
+            invokeAll(new RowBandAction(task, yStart, mid, bandHeight, progress),
+                    new RowBandAction(task, mid, yEnd, bandHeight, progress));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+
+// --- KLASA POMOCNICZA: FILTR SOBELA NA BUFORZE LUMINANCJI (bez kopii pośrednich) ---
+// Luminancja jest liczona raz do bufora byte[] (wielokrotnie używanego między wywołaniami,
+// np. dla kolejnych klatek o tym samym rozmiarze), a gradienty gx/gy w arytmetyce całkowitej
+// na pasach wierszy w ForkJoinPool. Tryb L2 daje wynik identyczny z wersją float + Math.sqrt,
+// tryb L1 (|gx| + |gy|) w ogóle nie liczy pierwiastka.
+class SobelEngine {
+
+    enum Magnitude { L2, L1 }
+
+    private byte[] luminance = new byte[0];
+
+    BufferedImage apply(BufferedImage source, Magnitude magnitude) {
+        BufferedImage resultImage = RasterUtils.createCompatible(source);
+        apply(RasterUtils.pixels(source), RasterUtils.pixels(resultImage),
+                source.getWidth(), source.getHeight(), magnitude);
+        return resultImage;
+    }
+
+    // synchronized - bufor luminancji jest współdzielony, np. gdy anulowane zadanie kończy jeszcze bieżący pas
+    synchronized void apply(int[] src, int[] dst, int w, int h, Magnitude magnitude) {
+        int pixelCount = w * h;
+        if (luminance.length < pixelCount) {
+            luminance = new byte[pixelCount];
+        }
+        byte[] lum = luminance;
+        boolean l1 = magnitude == Magnitude.L1;
+
+        RasterUtils.forEachRowBand(h, (yStart, yEnd) -> {
+            for (int i = yStart * w, end = yEnd * w; i < end; i++) {
+                int rgb = src[i];
+                int r = (rgb >> 16) & 0xFF; int g = (rgb >> 8) & 0xFF; int b = rgb & 0xFF;
+                // Ta sama waga co toGrayscaleWeighted
+                lum[i] = (byte) (int) (0.2126 * r + 0.7152 * g + 0.0722 * b);
+            }
+        });
+
+        RasterUtils.forEachRowBand(h, (yStart, yEnd) -> {
+            for (int y = yStart; y < yEnd; y++) {
+                // Wiersze sąsiednie przycięte do obrazu (Replicate Padding)
+                int up = Math.max(0, y - 1) * w;
+                int mid = y * w;
+                int down = Math.min(h - 1, y + 1) * w;
+                for (int x = 0; x < w; x++) {
+                    int left = x == 0 ? 0 : x - 1;
+                    int right = x == w - 1 ? w - 1 : x + 1;
+
+                    int p00 = lum[up + left] & 0xFF;   int p01 = lum[up + x] & 0xFF;   int p02 = lum[up + right] & 0xFF;
+                    int p10 = lum[mid + left] & 0xFF;                                   int p12 = lum[mid + right] & 0xFF;
+                    int p20 = lum[down + left] & 0xFF; int p21 = lum[down + x] & 0xFF; int p22 = lum[down + right] & 0xFF;
+
+                    // SOBEL_V = {-1,0,1},{-2,0,2},{-1,0,1}; SOBEL_H = {1,2,1},{0,0,0},{-1,-2,-1}
+                    int gx = (p02 - p00) + 2 * (p12 - p10) + (p22 - p20);
+                    int gy = (p00 + 2 * p01 + p02) - (p20 + 2 * p21 + p22);
+
+                    int magnitudeValue = l1 ? Math.abs(gx) + Math.abs(gy) : (int) Math.sqrt(gx * gx + gy * gy);
+                    int finalValue = Math.min(255, magnitudeValue);
+                    dst[mid + x] = (src[mid + x] & 0xFF000000) | (finalValue << 16) | (finalValue << 8) | finalValue;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,176 @@
+package ms.paint;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// --- KLASA POMOCNICZA: PANEL Z ZOOMEM RYSUJĄCY TYLKO WIDOCZNY FRAGMENT OBRAZU ---
+// Zamiast tworzyć przeskalowaną kopię całego obrazu (getScaledInstance) przy każdej zmianie zoomu,
+// panel rysuje w paintComponent tylko prostokąt z obszaru przycięcia (widoczny w JScrollPane).
+// Dla pomniejszeń trzyma piramidę obrazów zmniejszanych 2x (mipmapy), więc koszt rysowania zależy
+// od rozmiaru okna, a nie od rozmiaru obrazu. Poziomy powstają w tle (SwingWorker) dopiero wtedy,
+// gdy zoom < 0.5 pierwszy raz ich potrzebuje, i tylko do potrzebnej głębokości; do tego czasu
+// rysowany jest najbliższy gotowy poziom.
+class ZoomPanel extends JPanel {
+
+    private BufferedImage image;
+    private double zoom = 1.0;
+    private final List<BufferedImage> mipLevels = new ArrayList<>();
+    private MipBuilder mipBuilder;
+    private final String emptyText;
+
+    ZoomPanel(String emptyText) {
+        this.emptyText = emptyText;
+        setOpaque(true);
+    }
+
+    void setImage(BufferedImage image, double zoom) {
+        if (image != this.image) {
+            this.image = image;
+            mipLevels.clear();
+            if (mipBuilder != null) mipBuilder.cancel(false);
+            mipBuilder = null;
+            if (image != null) mipLevels.add(image);
+        }
+        this.zoom = zoom;
+        revalidate();
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (image == null) return new Dimension(0, 0);
+        return new Dimension((int) (image.getWidth() * zoom), (int) (image.getHeight() * zoom));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (image == null) {
+            FontMetrics fm = g.getFontMetrics();
+            g.drawString(emptyText, (getWidth() - fm.stringWidth(emptyText)) / 2, getHeight() / 2);
+            return;
+        }
+
+        int scaledWidth = (int) (image.getWidth() * zoom);
+        int scaledHeight = (int) (image.getHeight() * zoom);
+        // Obraz wyśrodkowany, gdy jest mniejszy niż widok (jak wcześniej w JLabel)
+        int offsetX = Math.max(0, (getWidth() - scaledWidth) / 2);
+        int offsetY = Math.max(0, (getHeight() - scaledHeight) / 2);
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        Rectangle visible = clip.intersection(new Rectangle(offsetX, offsetY, scaledWidth, scaledHeight));
+        if (visible.isEmpty()) return;
+
+        // Poziom piramidy o skali >= zoom - dalsze pomniejszenie to co najwyżej 2x.
+        // Poziom ma floor(w/2) pikseli szerokości, więc skala liczona jest z rzeczywistych wymiarów.
+        int levelIndex = mipLevelFor(zoom);
+        if (levelIndex >= mipLevels.size()) requestMipLevels(levelIndex);
+        BufferedImage level = mipLevels.get(Math.min(levelIndex, mipLevels.size() - 1));
+        double levelZoomX = zoom * image.getWidth() / level.getWidth();
+        double levelZoomY = zoom * image.getHeight() / level.getHeight();
+
+        // Fragment poziomu odpowiadający widocznemu prostokątowi (z zapasem 1 piksela na interpolację)
+        int sx1 = Math.max(0, (int) Math.floor((visible.x - offsetX) / levelZoomX) - 1);
+        int sy1 = Math.max(0, (int) Math.floor((visible.y - offsetY) / levelZoomY) - 1);
+        int sx2 = Math.min(level.getWidth(), (int) Math.ceil((visible.x + visible.width - offsetX) / levelZoomX) + 1);
+        int sy2 = Math.min(level.getHeight(), (int) Math.ceil((visible.y + visible.height - offsetY) / levelZoomY) + 1);
+
+        // Skalowanie przez przekształcenie afiniczne Graphics2D - rysowany jest tylko wycinek [sx1,sx2)x[sy1,sy2)
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.clip(visible);
+        g2.translate(offsetX, offsetY);
+        g2.scale(levelZoomX, levelZoomY);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(level, sx1, sy1, sx2, sy2, sx1, sy1, sx2, sy2, null);
+        g2.dispose();
+    }
+
+    // Indeks poziomu piramidy dla danego zoomu (poziom może jeszcze nie istnieć)
+    private static int mipLevelFor(double zoom) {
+        int levelIndex = 0;
+        double scale = 1.0;
+        while (scale / 2 >= zoom) {
+            scale /= 2;
+            levelIndex++;
+        }
+        return levelIndex;
+    }
+
+    // Uruchamia budowę brakujących poziomów do levelIndex, chyba że budowa już trwa.
+    // Po jej zakończeniu repaint sprawdza ponownie, czy zoom nie wymaga jeszcze głębszego poziomu.
+    private void requestMipLevels(int levelIndex) {
+        if (mipBuilder != null) return;
+        BufferedImage last = mipLevels.get(mipLevels.size() - 1);
+        if (last.getWidth() == 1 && last.getHeight() == 1) return;
+        mipBuilder = new MipBuilder(image, last, levelIndex - (mipLevels.size() - 1));
+        mipBuilder.execute();
+    }
+
+    // Budowa kolejnych poziomów piramidy poza EDT; każdy gotowy poziom trafia do listy od razu
+    private class MipBuilder extends SwingWorker<Void, BufferedImage> {
+        private final BufferedImage source;
+        private final BufferedImage from;
+        private final int count;
+
+        MipBuilder(BufferedImage source, BufferedImage from, int count) {
+            this.source = source;
+            this.from = from;
+            this.count = count;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            BufferedImage previous = from;
+            for (int i = 0; i < count && !isCancelled() && (previous.getWidth() > 1 || previous.getHeight() > 1); i++) {
+                previous = downsample(previous);
+                publish(previous);
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<BufferedImage> levels) {
+            // Wyniki dla obrazu, który został już podmieniony, są odrzucane
+            if (isCancelled() || image != source) return;
+            mipLevels.addAll(levels);
+            repaint();
+        }
+
+        @Override
+        protected void done() {
+            if (mipBuilder != this) return;
+            mipBuilder = null;
+            repaint();
+        }
+    }
+
+    // Zmniejszenie 2x przez uśrednienie bloków 2x2 (kanały ARGB osobno)
+    private static BufferedImage downsample(BufferedImage source) {
+        int w = source.getWidth(); int h = source.getHeight();
+        int nw = Math.max(1, w / 2); int nh = Math.max(1, h / 2);
+        BufferedImage result = new BufferedImage(nw, nh, source.getType());
+        int[] src = RasterUtils.pixels(source);
+        int[] dst = RasterUtils.pixels(result);
+        RasterUtils.forEachRowBand(nh, (yStart, yEnd) -> {
+            for (int y = yStart; y < yEnd; y++) {
+                int row0 = Math.min(h - 1, 2 * y) * w;
+                int row1 = Math.min(h - 1, 2 * y + 1) * w;
+                for (int x = 0; x < nw; x++) {
+                    int x0 = Math.min(w - 1, 2 * x); int x1 = Math.min(w - 1, 2 * x + 1);
+                    int p00 = src[row0 + x0]; int p01 = src[row0 + x1];
+                    int p10 = src[row1 + x0]; int p11 = src[row1 + x1];
+                    int a = (((p00 >>> 24) + (p01 >>> 24) + (p10 >>> 24) + (p11 >>> 24)) + 2) >> 2;
+                    int r = ((((p00 >> 16) & 0xFF) + ((p01 >> 16) & 0xFF) + ((p10 >> 16) & 0xFF) + ((p11 >> 16) & 0xFF)) + 2) >> 2;
+                    int gr = ((((p00 >> 8) & 0xFF) + ((p01 >> 8) & 0xFF) + ((p10 >> 8) & 0xFF) + ((p11 >> 8) & 0xFF)) + 2) >> 2;
+                    int b = (((p00 & 0xFF) + (p01 & 0xFF) + (p10 & 0xFF) + (p11 & 0xFF)) + 2) >> 2;
+                    dst[y * nw + x] = (a << 24) | (r << 16) | (gr << 8) | b;
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+
+// --- KLASA POMOCNICZA: BINARYZACJA LOKALNA (ADAPTACYJNA) BEZ INTERFEJSU GRAFICZNEGO ---
+// Próg liczony osobno dla każdego piksela ze średniej (i odchylenia) w oknie window x window
+// wokół niego - radzi sobie z nierównym oświetleniem, przy którym próg globalny zawodzi.
+// Średnia i wariancja okna pochodzą z obrazów całkowych sum i sum kwadratów (IntegralImage),
+// więc koszt na piksel jest stały niezależnie od rozmiaru okna. Przy brzegach okno jest przycinane.
+//   Bradley: T = m * (1 - k)                 (k ~ 0.15)
+//   Sauvola: T = m * (1 + k * (s / R - 1))   (k ~ 0.34, R = 128 - zakres odchylenia dla 8 bitów)
+//   Niblack: T = m + k * s                   (k ~ -0.2)
+// Jak w binarizeManual: piksel < T -> 0, pozostałe -> 255. Klasa korzysta tylko z RasterUtils
+// i IntegralImage, więc działa bez interfejsu (np. w przetwarzaniu wsadowym).
+class AdaptiveThreshold {
+
+    static final double SAUVOLA_R = 128.0;
+
+    enum Method {
+        BRADLEY("Bradley", 0.15, false),
+        SAUVOLA("Sauvola", 0.34, true),
+        NIBLACK("Niblack", -0.2, true);
+
+        final String label;
+        final double defaultK;
+        final boolean needsVariance;
+
+        Method(String label, double defaultK, boolean needsVariance) {
+            this.label = label;
+            this.defaultK = defaultK;
+            this.needsVariance = needsVariance;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private AdaptiveThreshold() {
+    }
+
+    // Domyślne okno: 1/8 krótszego boku (Bradley), ale nie mniej niż 15 i zawsze nieparzyste
+    static int defaultWindow(int width, int height) {
+        int window = Math.max(15, Math.min(width, height) / 8);
+        return window | 1;
+    }
+
+    static BufferedImage bradley(BufferedImage img, int window, double k) {
+        return binarize(img, Method.BRADLEY, window, k);
+    }
+
+    static BufferedImage sauvola(BufferedImage img, int window, double k) {
+        return binarize(img, Method.SAUVOLA, window, k);
+    }
+
+    static BufferedImage niblack(BufferedImage img, int window, double k) {
+        return binarize(img, Method.NIBLACK, window, k);
+    }
+
+    // Nowy obraz TYPE_BYTE_GRAY; obraz w innym formacie jest najpierw sprowadzany do szarości
+    static BufferedImage binarize(BufferedImage img, Method method, int window, double k) {
+        BufferedImage src = RasterUtils.isPackedGray(img) ? img : RasterUtils.toPackedGray(img);
+        int w = src.getWidth(), h = src.getHeight();
+        BufferedImage res = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        binarize(RasterUtils.grayPixels(src), RasterUtils.grayPixels(res), w, h, method, window, k);
+        return res;
+    }
+
+    // src i dst to tablice w x h (dst może być tą samą tablicą co src - tablice całkowe są już gotowe)
+    static void binarize(byte[] src, byte[] dst, int w, int h, Method method, int window, double k) {
+        if (window < 1) throw new IllegalArgumentException("Okno musi mieć co najmniej 1 piksel: " + window);
+        int r = window / 2;
+        long maxArea = (long) Math.min(2 * r + 1, w) * Math.min(2 * r + 1, h);
+        IntegralImage sums = IntegralImage.of(src, w, h, false, maxArea);
+        IntegralImage squares = method.needsVariance ? IntegralImage.of(src, w, h, true, maxArea) : null;
+
+        RasterUtils.forEachRowBand(w, h, (yStart, yEnd) -> {
+            for (int y = yStart; y < yEnd; y++) {
+                int y0 = Math.max(0, y - r), y1 = Math.min(h, y + r + 1);
+                for (int x = 0, i = y * w; x < w; x++, i++) {
+                    int x0 = Math.max(0, x - r), x1 = Math.min(w, x + r + 1);
+                    double n = (double) (x1 - x0) * (y1 - y0);
+                    double mean = sums.sum(x0, y0, x1, y1) / n;
+                    double threshold;
+                    if (method == Method.BRADLEY) {
+                        threshold = mean * (1 - k);
+                    } else {
+                        double variance = squares.sum(x0, y0, x1, y1) / n - mean * mean;
+                        double s = Math.sqrt(Math.max(0, variance));
+                        threshold = method == Method.SAUVOLA
+                                ? mean * (1 + k * (s / SAUVOLA_R - 1))
+                                : mean + k * s;
+                    }
+                    dst[i] = (src[i] & 0xFF) < threshold ? 0 : (byte) 255;
+                }
+            }
+        });
+    }
+}
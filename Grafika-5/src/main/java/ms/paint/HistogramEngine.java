@@ -0,0 +1,213 @@
+package ms.paint;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// --- KLASA POMOCNICZA: HISTOGRAM LICZONY PROSTO Z RASTRA ---
+// Zamiast getRGB (konwersja przez model kolorów dla każdego piksela) czytana jest tablica
+// DataBufferByte / DataBufferInt. Wiersze dzielone są na pasy liczone równolegle - każdy pas
+// ma własne kosze, a wyniki są sumowane przy łączeniu zadań, więc wątki nie dzielą żadnej tablicy.
+// Jedno przejście daje histogramy R, G, B i luminancji; dla obrazu szarego tylko luminancję.
+// Dla TYPE_BYTE_GRAY liczone są zapisane poziomy szarości (te, które rysuje drawImage) -
+// getRGB przepuszczał je jeszcze przez konwersję liniowa szarość -> sRGB.
+class HistogramEngine {
+
+    static final int BINS = 256;
+    // Poniżej tej liczby pikseli pas nie jest już dzielony
+    private static final int MIN_BAND_PIXELS = 1 << 16;
+
+    // Wynik: red/green/blue == null dla obrazu jednokanałowego
+    static final class Histogram {
+        final int[] luminance;
+        final int[] red;
+        final int[] green;
+        final int[] blue;
+        final long total;
+
+        Histogram(int[] luminance, int[] red, int[] green, int[] blue) {
+            this.luminance = luminance;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            long sum = 0;
+            for (int v : luminance) sum += v;
+            this.total = sum;
+        }
+
+        boolean isGray() {
+            return red == null;
+        }
+    }
+
+    private HistogramEngine() {
+    }
+
+    static Histogram compute(BufferedImage img) {
+        Layout layout = Layout.of(img);
+        int[][] bins = ForkJoinPool.commonPool().invoke(new BandTask(layout, 0, img.getHeight(),
+                bandHeight(img.getWidth(), img.getHeight())));
+        return layout.gray
+                ? new Histogram(bins[0], null, null, null)
+                : new Histogram(bins[0], bins[1], bins[2], bins[3]);
+    }
+
+    // Luminancja w przybliżeniu BT.601 na liczbach całkowitych (wagi sumują się do 256)
+    static int luminance(int r, int g, int b) {
+        return (77 * r + 150 * g + 29 * b + 128) >> 8;
+    }
+
+    private static int bandHeight(int width, int height) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int minRows = Math.max(1, MIN_BAND_PIXELS / Math.max(1, width));
+        return Math.max(minRows, (height + parallelism * 4 - 1) / (parallelism * 4));
+    }
+
+    // Sposób dostępu do pikseli: bajty przeplatane (szary / BGR / ABGR), int RGB albo zapasowo getRGB
+    private static final class Layout {
+        final BufferedImage image;
+        final boolean gray;
+        final byte[] bytes;
+        final int[] ints;
+        final int offset;
+        final int stride;
+        final int pixelStride;
+        final int redOffset, greenOffset, blueOffset;
+
+        private Layout(BufferedImage image, boolean gray, byte[] bytes, int[] ints, int offset, int stride,
+                       int pixelStride, int redOffset, int greenOffset, int blueOffset) {
+            this.image = image;
+            this.gray = gray;
+            this.bytes = bytes;
+            this.ints = ints;
+            this.offset = offset;
+            this.stride = stride;
+            this.pixelStride = pixelStride;
+            this.redOffset = redOffset;
+            this.greenOffset = greenOffset;
+            this.blueOffset = blueOffset;
+        }
+
+        static Layout of(BufferedImage img) {
+            Raster raster = img.getRaster();
+            DataBuffer buffer = raster.getDataBuffer();
+            int tx = -raster.getSampleModelTranslateX();
+            int ty = -raster.getSampleModelTranslateY();
+
+            if (buffer instanceof DataBufferByte db && buffer.getNumBanks() == 1
+                    && raster.getSampleModel() instanceof ComponentSampleModel sm
+                    && img.getColorModel() instanceof ComponentColorModel cm
+                    && !cm.isAlphaPremultiplied()) {
+                int type = cm.getColorSpace().getType();
+                // Początek piksela (tx, ty); przesunięcia kanałów doliczane osobno
+                int offset = db.getOffset() + ty * sm.getScanlineStride() + tx * sm.getPixelStride();
+                int[] bands = sm.getBandOffsets();
+                if (type == ColorSpace.TYPE_GRAY && cm.getNumColorComponents() == 1) {
+                    return new Layout(img, true, db.getData(), null, offset + bands[0], sm.getScanlineStride(),
+                            sm.getPixelStride(), 0, 0, 0);
+                }
+                if (type == ColorSpace.TYPE_RGB && cm.getNumColorComponents() == 3) {
+                    return new Layout(img, false, db.getData(), null, offset, sm.getScanlineStride(),
+                            sm.getPixelStride(), bands[0], bands[1], bands[2]);
+                }
+            }
+            if (buffer instanceof DataBufferInt db && buffer.getNumBanks() == 1
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                    && img.getColorModel() instanceof DirectColorModel cm
+                    && cm.getRedMask() == 0xFF0000 && cm.getGreenMask() == 0xFF00 && cm.getBlueMask() == 0xFF
+                    && !cm.isAlphaPremultiplied()) {
+                return new Layout(img, false, null, db.getData(), db.getOffset() + sm.getOffset(tx, ty),
+                        sm.getScanlineStride(), 1, 0, 0, 0);
+            }
+            // Pozostałe typy (indeksowane, 16-bitowe, ...) - wiersz po wierszu przez getRGB
+            return new Layout(img, false, null, null, 0, img.getWidth(), 1, 0, 0, 0);
+        }
+    }
+
+    private static final class BandTask extends RecursiveTask<int[][]> {
+        private final Layout layout;
+        private final int yStart;
+        private final int yEnd;
+        private final int bandHeight;
+
+        BandTask(Layout layout, int yStart, int yEnd, int bandHeight) {
+            this.layout = layout;
+            this.yStart = yStart;
+            this.yEnd = yEnd;
+            this.bandHeight = bandHeight;
+        }
+
+        @Override
+        protected int[][] compute() {
+            if (yEnd - yStart <= bandHeight) return countBand(layout, yStart, yEnd);
+            int bands = (yEnd - yStart + bandHeight - 1) / bandHeight;
+            int mid = yStart + (bands / 2) * bandHeight;
+            BandTask top = new BandTask(layout, yStart, mid, bandHeight);
+            top.fork();
+            int[][] bottom = new BandTask(layout, mid, yEnd, bandHeight).compute();
+            int[][] merged = top.join();
+            for (int c = 0; c < merged.length; c++) {
+                int[] dst = merged[c], src = bottom[c];
+                for (int i = 0; i < BINS; i++) dst[i] += src[i];
+            }
+            return merged;
+        }
+    }
+
+    // Kosze jednego pasa: [0] luminancja, [1..3] R, G, B (tylko dla obrazu kolorowego)
+    private static int[][] countBand(Layout l, int yStart, int yEnd) {
+        int width = l.image.getWidth();
+        int[] lum = new int[BINS];
+        if (l.gray) {
+            byte[] data = l.bytes;
+            for (int y = yStart; y < yEnd; y++) {
+                for (int i = l.offset + y * l.stride, x = 0; x < width; x++, i += l.pixelStride) {
+                    lum[data[i] & 0xFF]++;
+                }
+            }
+            return new int[][] {lum};
+        }
+
+        int[] red = new int[BINS], green = new int[BINS], blue = new int[BINS];
+        if (l.bytes != null) {
+            byte[] data = l.bytes;
+            for (int y = yStart; y < yEnd; y++) {
+                for (int i = l.offset + y * l.stride, x = 0; x < width; x++, i += l.pixelStride) {
+                    int r = data[i + l.redOffset] & 0xFF;
+                    int g = data[i + l.greenOffset] & 0xFF;
+                    int b = data[i + l.blueOffset] & 0xFF;
+                    red[r]++; green[g]++; blue[b]++;
+                    lum[luminance(r, g, b)]++;
+                }
+            }
+        } else {
+            int[] data = l.ints;
+            int[] row = data == null ? new int[width] : null;
+            for (int y = yStart; y < yEnd; y++) {
+                int[] src = data;
+                int i = l.offset + y * l.stride;
+                if (data == null) {
+                    l.image.getRGB(0, y, width, 1, row, 0, width);
+                    src = row;
+                    i = 0;
+                }
+                for (int end = i + width; i < end; i++) {
+                    int rgb = src[i];
+                    int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+                    red[r]++; green[g]++; blue[b]++;
+                    lum[luminance(r, g, b)]++;
+                }
+            }
+        }
+        return new int[][] {lum, red, green, blue};
+    }
+}
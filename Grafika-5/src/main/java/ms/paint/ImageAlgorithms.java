@@ -0,0 +1,147 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+
+// Algorytmy
+class ImageAlgorithms {
+    public static BufferedImage toGrayscale(BufferedImage src) {
+        return RasterUtils.toPackedGray(src);
+    }
+
+    // Histogram luminancji (dla obrazu szarego - poziomów szarości) liczony z rastra, patrz HistogramEngine
+    public static int[] calculateHistogram(BufferedImage img) {
+        return HistogramEngine.compute(img).luminance;
+    }
+
+    public static BufferedImage stretchHistogram(BufferedImage img) {
+        return stretchHistogram(img, null, false);
+    }
+
+    // hist - histogram img policzony wcześniej (albo null); inPlace - wynik nadpisuje img
+    public static BufferedImage stretchHistogram(BufferedImage img, int[] hist, boolean inPlace) {
+        int[] lut = stretchLut(hist != null ? hist : calculateHistogram(img));
+        return lut == null ? img : applyLut(img, lut, inPlace);
+    }
+
+    // LUT rozciągający [min, max] histogramu na [0, 255]; null, gdy min == max
+    static int[] stretchLut(int[] h) {
+        int min=0, max=255;
+        for(int i=0;i<256;i++) if(h[i]>0){min=i; break;}
+        for(int i=255;i>=0;i--) if(h[i]>0){max=i; break;}
+        if(max==min) return null;
+
+        int[] lut = new int[256];
+        for(int i=0; i<256; i++) {
+            int v = (int)((255.0*(i-min))/(max-min));
+            lut[i] = Math.max(0, Math.min(255, v));
+        }
+        return lut;
+    }
+
+    public static BufferedImage equalizeHistogram(BufferedImage img) {
+        return equalizeHistogram(img, null, false);
+    }
+
+    public static BufferedImage equalizeHistogram(BufferedImage img, int[] hist, boolean inPlace) {
+        return applyLut(img, equalizeLut(hist != null ? hist : calculateHistogram(img)), inPlace);
+    }
+
+    // LUT wyrównujący (dystrybuanta histogramu przeskalowana do [0, 255])
+    static int[] equalizeLut(int[] h) {
+        int total = 0;
+        for(int v : h) total += v;
+        int[] cdf = new int[256];
+        cdf[0] = h[0];
+        for(int i=1; i<256; i++) cdf[i] = cdf[i-1] + h[i];
+
+        int minCdf = 0;
+        for(int c : cdf) if(c>0) { minCdf = c; break; }
+
+        int[] lut = new int[256];
+        for(int i=0; i<256; i++) {
+            lut[i] = (int) Math.round(((double)(cdf[i]-minCdf)/(total-minCdf))*255);
+            lut[i] = Math.max(0, Math.min(255, lut[i]));
+        }
+        return lut;
+    }
+
+    public static BufferedImage binarizeManual(BufferedImage img, int thr) {
+        return binarizeManual(img, thr, false);
+    }
+
+    public static BufferedImage binarizeManual(BufferedImage img, int thr, boolean inPlace) {
+        return applyLut(img, thresholdLut(thr), inPlace);
+    }
+
+    // Piksele < thr -> 0, pozostałe -> 255
+    static int[] thresholdLut(int thr) {
+        int[] lut = new int[256];
+        for(int i=0; i<256; i++) lut[i] = (i<thr)?0:255;
+        return lut;
+    }
+
+    // Progi rosnące t1 < ... < tK dzielą poziomy na K+1 klas, klasa c -> 255 * c / K.
+    // Dla jednego progu to zwykła binaryzacja (thresholdLut).
+    static int[] multiThresholdLut(int[] thresholds) {
+        int[] lut = new int[256];
+        int k = thresholds.length;
+        for(int i=0, c=0; i<256; i++) {
+            while(c<k && i>=thresholds[c]) c++;
+            lut[i] = (int) Math.round(255.0*c/k);
+        }
+        return lut;
+    }
+
+    public static BufferedImage binarizePercentBlack(BufferedImage img, double p) {
+        return binarizePercentBlack(img, p, null, false);
+    }
+
+    public static BufferedImage binarizePercentBlack(BufferedImage img, double p, int[] hist, boolean inPlace) {
+        return binarizeManual(img, percentBlackThreshold(hist != null ? hist : calculateHistogram(img), p), inPlace);
+    }
+
+    // Najmniejszy próg, poniżej którego (włącznie) leży ułamek p pikseli
+    static int percentBlackThreshold(int[] h, double p) {
+        return new ThresholdEngine(h).percentBlack(p);
+    }
+
+    public static BufferedImage binarizeIterativeMean(BufferedImage img) {
+        return binarizeIterativeMean(img, null, false);
+    }
+
+    public static BufferedImage binarizeIterativeMean(BufferedImage img, int[] hist, boolean inPlace) {
+        return binarizeManual(img, iterativeMeanThreshold(hist != null ? hist : calculateHistogram(img)), inPlace);
+    }
+
+    // Tablice skumulowane zamiast przeglądania 256 koszy w każdej iteracji, patrz ThresholdEngine
+    static int iterativeMeanThreshold(int[] h) {
+        return new ThresholdEngine(h).iterativeMean();
+    }
+
+    // Tablica LUT na poziomach szarości: byte[] -> byte[] prosto z rastra, pasami wierszy równolegle.
+    // inPlace = true nadpisuje img (gdy jest zwartym TYPE_BYTE_GRAY), inaczej powstaje nowy obraz.
+    // Obraz w innym formacie jest najpierw sprowadzany do szarości.
+    public static BufferedImage applyLut(BufferedImage img, int[] lut, boolean inPlace) {
+        BufferedImage src = RasterUtils.isPackedGray(img) ? img : toGrayscale(img);
+        BufferedImage res = inPlace || src != img
+                ? src
+                : new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        applyLut(RasterUtils.grayPixels(src), RasterUtils.grayPixels(res), src.getWidth(), src.getHeight(), toByteLut(lut));
+        return res;
+    }
+
+    // src i dst mogą być tą samą tablicą
+    static void applyLut(byte[] src, byte[] dst, int width, int height, byte[] lut) {
+        RasterUtils.forEachRowBand(width, height, (yStart, yEnd) -> {
+            for (int i = yStart * width, end = yEnd * width; i < end; i++) {
+                dst[i] = lut[src[i] & 0xFF];
+            }
+        });
+    }
+
+    static byte[] toByteLut(int[] lut) {
+        byte[] b = new byte[256];
+        for (int i = 0; i < 256; i++) b[i] = (byte) Math.max(0, Math.min(255, lut[i]));
+        return b;
+    }
+}
@@ -9,11 +9,12 @@ import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class ImageProcessingApp extends JFrame {
 
     private BufferedImage originalImage;  // Kopia zapasowa do resetu
-    private BufferedImage processedImage; // Obraz aktualnie wyświetlany/edytowany
+    private ImageState state;             // Obraz aktualnie wyświetlany/edytowany razem z histogramem
 
     // Komponenty GUI
     private ZoomableImagePanel imagePanel; // Nasz nowy panel z zoomem
@@ -43,6 +44,8 @@ public class ImageProcessingApp extends JFrame {
         JButton btnBinManual = new JButton("Bin. Ręczna");
         JButton btnBinPercent = new JButton("Bin. % Czarnego");
         JButton btnBinIterative = new JButton("Bin. Iteracyjna");
+        JButton btnBinAuto = new JButton("Bin. Automatyczna...");
+        JButton btnBinLocal = new JButton("Bin. Lokalna...");
 
         // Dodawanie do paska (z separatorami dla czytelności)
         topToolBar.add(new JLabel("Plik:"));
@@ -60,6 +63,8 @@ public class ImageProcessingApp extends JFrame {
         topToolBar.add(btnBinManual);
         topToolBar.add(btnBinPercent);
         topToolBar.add(btnBinIterative);
+        topToolBar.add(btnBinAuto);
+        topToolBar.add(btnBinLocal);
 
         add(topToolBar, BorderLayout.NORTH);
 
@@ -91,10 +96,9 @@ public class ImageProcessingApp extends JFrame {
         // Resetowanie obrazu
         btnReset.addActionListener(e -> {
             if (originalImage != null) {
-                processedImage = deepCopy(originalImage);
-                imagePanel.setImage(processedImage);
+                state = new ImageState(deepCopy(originalImage));
                 imagePanel.resetZoom(); // Resetujemy też powiększenie
-                updateHistogram();
+                updateDisplay();
             }
         });
 
@@ -102,15 +106,13 @@ public class ImageProcessingApp extends JFrame {
 
         btnStretch.addActionListener(e -> {
             if (ensureGrayscale()) {
-                processedImage = ImageAlgorithms.stretchHistogram(processedImage);
-                updateDisplay();
+                applyLut(ImageAlgorithms.stretchLut(state.luminance()));
             }
         });
 
         btnEqualize.addActionListener(e -> {
             if (ensureGrayscale()) {
-                processedImage = ImageAlgorithms.equalizeHistogram(processedImage);
-                updateDisplay();
+                applyLut(ImageAlgorithms.equalizeLut(state.luminance()));
             }
         });
 
@@ -120,8 +122,7 @@ public class ImageProcessingApp extends JFrame {
                 if (input != null) {
                     try {
                         int threshold = Integer.parseInt(input);
-                        processedImage = ImageAlgorithms.binarizeManual(processedImage, threshold);
-                        updateDisplay();
+                        applyLut(ImageAlgorithms.thresholdLut(threshold));
                     } catch (NumberFormatException ex) {
                         JOptionPane.showMessageDialog(this, "Nieprawidłowa liczba.");
                     }
@@ -135,8 +136,7 @@ public class ImageProcessingApp extends JFrame {
                 if (input != null) {
                     try {
                         double percent = Double.parseDouble(input);
-                        processedImage = ImageAlgorithms.binarizePercentBlack(processedImage, percent);
-                        updateDisplay();
+                        applyLut(ImageAlgorithms.thresholdLut(state.thresholds().percentBlack(percent)));
                     } catch (NumberFormatException ex) {
                         JOptionPane.showMessageDialog(this, "Nieprawidłowa liczba.");
                     }
@@ -146,10 +146,17 @@ public class ImageProcessingApp extends JFrame {
 
         btnBinIterative.addActionListener(e -> {
             if (ensureGrayscale()) {
-                processedImage = ImageAlgorithms.binarizeIterativeMean(processedImage);
-                updateDisplay();
+                applyLut(ImageAlgorithms.thresholdLut(state.thresholds().iterativeMean()));
             }
         });
+
+        btnBinAuto.addActionListener(e -> {
+            if (ensureGrayscale()) autoThreshold();
+        });
+
+        btnBinLocal.addActionListener(e -> {
+            if (ensureGrayscale()) localThreshold();
+        });
     }
 
     private void loadImage() {
@@ -159,11 +166,10 @@ public class ImageProcessingApp extends JFrame {
             try {
                 originalImage = ImageIO.read(file);
                 // Tworzymy kopię roboczą
-                processedImage = deepCopy(originalImage);
+                state = new ImageState(deepCopy(originalImage));
 
-                imagePanel.setImage(processedImage);
                 imagePanel.resetZoom();
-                updateHistogram();
+                updateDisplay();
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "Błąd wczytywania pliku.");
             }
@@ -172,33 +178,116 @@ public class ImageProcessingApp extends JFrame {
 
     private void convertToGrayscale() {
         if (originalImage == null) return;
-        processedImage = ImageAlgorithms.toGrayscale(processedImage); // Pracujemy na current image
+        state.replace(ImageAlgorithms.toGrayscale(state.image())); // Pracujemy na current image
         updateDisplay();
     }
 
     private boolean ensureGrayscale() {
-        if (processedImage == null) {
+        if (state == null) {
             JOptionPane.showMessageDialog(this, "Najpierw wczytaj obraz.");
             return false;
         }
         // Dla pewności konwertuj, jeśli to RGB
-        if (processedImage.getType() != BufferedImage.TYPE_BYTE_GRAY) {
-            processedImage = ImageAlgorithms.toGrayscale(processedImage);
+        // (kopia robocza jest zawsze zwarta, więc operacje LUT mogą ją nadpisywać w miejscu)
+        if (!RasterUtils.isPackedGray(state.image())) {
+            state.replace(ImageAlgorithms.toGrayscale(state.image()));
         }
         return true;
     }
 
-    private void updateDisplay() {
-        if (processedImage != null) {
-            imagePanel.setImage(processedImage);
-            updateHistogram();
+    // Metody progowania do przeglądania na żywo: zmiana metody (także strzałkami w liście)
+    // od razu pokazuje podgląd i progi na histogramie; obraz roboczy zmienia się dopiero po OK
+    private static final String[] AUTO_METHODS = {
+            "Otsu", "Kapur (entropia)", "Li (min. entropia skrośna)", "Średnia iteracyjna",
+            "Otsu wielopoziomowy - 2 progi", "Otsu wielopoziomowy - 3 progi", "Otsu wielopoziomowy - 4 progi"
+    };
+
+    private void autoThreshold() {
+        ThresholdEngine engine = state.thresholds();
+        BufferedImage source = state.image();
+        int w = source.getWidth(), h = source.getHeight();
+        BufferedImage preview = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        JComboBox<String> methods = new JComboBox<>(AUTO_METHODS);
+        JLabel info = new JLabel(" ");
+        int[][] current = new int[1][];
+
+        Runnable update = () -> {
+            long start = System.nanoTime();
+            int[] thr = autoThresholds(engine, methods.getSelectedIndex());
+            long micros = (System.nanoTime() - start) / 1000;
+            current[0] = thr;
+            info.setText("Progi: " + Arrays.toString(thr) + " (" + micros + " µs)");
+            ImageAlgorithms.applyLut(RasterUtils.grayPixels(source), RasterUtils.grayPixels(preview), w, h,
+                    ImageAlgorithms.toByteLut(ImageAlgorithms.multiThresholdLut(thr)));
+            imagePanel.setImage(preview);
+            histogramPanel.setThresholds(thr);
+        };
+        methods.addActionListener(e -> update.run());
+        update.run();
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(methods, BorderLayout.NORTH);
+        panel.add(info, BorderLayout.CENTER);
+        int choice = JOptionPane.showConfirmDialog(this, panel, "Binaryzacja automatyczna",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        histogramPanel.setThresholds(null);
+        if (choice == JOptionPane.OK_OPTION) {
+            applyLut(ImageAlgorithms.multiThresholdLut(current[0]));
+        } else {
+            updateDisplay();
         }
     }
 
-    private void updateHistogram() {
-        if (processedImage != null) {
-            int[] hist = ImageAlgorithms.calculateHistogram(processedImage);
-            histogramPanel.setHistogram(hist);
+    // Binaryzacja lokalna (Bradley / Sauvola / Niblack) - operacja przestrzenna, więc histogram liczony od nowa
+    private void localThreshold() {
+        BufferedImage source = state.image();
+        JComboBox<AdaptiveThreshold.Method> methods = new JComboBox<>(AdaptiveThreshold.Method.values());
+        JSpinner window = new JSpinner(new SpinnerNumberModel(
+                AdaptiveThreshold.defaultWindow(source.getWidth(), source.getHeight()), 3, 4001, 2));
+        JTextField k = new JTextField(String.valueOf(AdaptiveThreshold.Method.BRADLEY.defaultK), 6);
+        methods.addActionListener(e ->
+                k.setText(String.valueOf(((AdaptiveThreshold.Method) methods.getSelectedItem()).defaultK)));
+
+        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+        panel.add(new JLabel("Metoda:"));
+        panel.add(methods);
+        panel.add(new JLabel("Okno (piksele):"));
+        panel.add(window);
+        panel.add(new JLabel("Współczynnik k:"));
+        panel.add(k);
+        if (JOptionPane.showConfirmDialog(this, panel, "Binaryzacja lokalna",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+        try {
+            double kValue = Double.parseDouble(k.getText().trim());
+            state.replace(AdaptiveThreshold.binarize(source, (AdaptiveThreshold.Method) methods.getSelectedItem(),
+                    (Integer) window.getValue(), kValue));
+            updateDisplay();
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Nieprawidłowa liczba.");
+        }
+    }
+
+    private static int[] autoThresholds(ThresholdEngine engine, int method) {
+        switch (method) {
+            case 0: return new int[] {engine.otsu()};
+            case 1: return new int[] {engine.kapur()};
+            case 2: return new int[] {engine.li()};
+            case 3: return new int[] {engine.iterativeMean()};
+            default: return engine.multiOtsu(method - 2);
+        }
+    }
+
+    // Operacja punktowa: obraz nadpisywany w miejscu, histogram przeliczany z poprzedniego w O(256)
+    private void applyLut(int[] lut) {
+        state.applyLut(lut);
+        updateDisplay();
+    }
+
+    // Histogram bierzemy ze stanu - tu nic nie jest liczone od nowa
+    private void updateDisplay() {
+        if (state != null) {
+            imagePanel.setImage(state.image());
+            histogramPanel.setHistogram(state.histogram());
         }
     }
 
@@ -286,8 +375,15 @@ class ZoomableImagePanel extends JPanel {
 }
 
 // --- Panel Histogramu (Bez zmian logicznych, tylko wygląd) ---
+// Słupki: luminancja; dla obrazu kolorowego dodatkowo linie kanałów R, G, B
 class HistogramPanel extends JPanel {
+    private static final Color[] CHANNEL_COLORS = {
+            new Color(220, 0, 0, 180), new Color(0, 160, 0, 180), new Color(0, 0, 220, 180)
+    };
+
     private int[] histogram;
+    private int[][] channels;
+    private int[] thresholds;
 
     public HistogramPanel() {
         setBackground(Color.WHITE);
@@ -296,6 +392,19 @@ class HistogramPanel extends JPanel {
 
     public void setHistogram(int[] histogram) {
         this.histogram = histogram;
+        this.channels = null;
+        repaint();
+    }
+
+    // Progi zaznaczane na histogramie (null = brak)
+    public void setThresholds(int[] thresholds) {
+        this.thresholds = thresholds;
+        repaint();
+    }
+
+    public void setHistogram(HistogramEngine.Histogram h) {
+        this.histogram = h.luminance;
+        this.channels = h.isGray() ? null : new int[][] {h.red, h.green, h.blue};
         repaint();
     }
 
@@ -308,6 +417,10 @@ class HistogramPanel extends JPanel {
         int h = getHeight();
         int maxVal = 0;
         for (int v : histogram) maxVal = Math.max(maxVal, v);
+        if (channels != null) {
+            for (int[] c : channels) for (int v : c) maxVal = Math.max(maxVal, v);
+        }
+        if (maxVal == 0) return;
 
         g.setColor(Color.LIGHT_GRAY);
         g.fillRect(0,0,w,h);
@@ -321,110 +434,26 @@ class HistogramPanel extends JPanel {
             int y = h - barH;
             g.drawLine(x, h, x, y);
         }
-    }
-}
-
-
-
-// Algorytmy
-class ImageAlgorithms {
-    public static BufferedImage toGrayscale(BufferedImage src) {
-        BufferedImage res = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        Graphics g = res.getGraphics();
-        g.drawImage(src, 0, 0, null);
-        g.dispose();
-        return res;
-    }
-
-    public static int[] calculateHistogram(BufferedImage img) {
-        int[] h = new int[256];
-        for (int y=0; y<img.getHeight(); y++)
-            for (int x=0; x<img.getWidth(); x++)
-                h[img.getRGB(x,y) & 0xFF]++;
-        return h;
-    }
-
-    public static BufferedImage stretchHistogram(BufferedImage img) {
-        int[] h = calculateHistogram(img);
-        int min=0, max=255;
-        for(int i=0;i<256;i++) if(h[i]>0){min=i; break;}
-        for(int i=255;i>=0;i--) if(h[i]>0){max=i; break;}
-        if(max==min) return img;
-
-        int[] lut = new int[256];
-        for(int i=0; i<256; i++) {
-            int v = (int)((255.0*(i-min))/(max-min));
-            lut[i] = Math.max(0, Math.min(255, v));
-        }
-        return applyLut(img, lut);
-    }
-
-    public static BufferedImage equalizeHistogram(BufferedImage img) {
-        int[] h = calculateHistogram(img);
-        int total = img.getWidth()*img.getHeight();
-        int[] cdf = new int[256];
-        cdf[0] = h[0];
-        for(int i=1; i<256; i++) cdf[i] = cdf[i-1] + h[i];
-
-        int minCdf = 0;
-        for(int c : cdf) if(c>0) { minCdf = c; break; }
-
-        int[] lut = new int[256];
-        for(int i=0; i<256; i++) {
-            lut[i] = (int) Math.round(((double)(cdf[i]-minCdf)/(total-minCdf))*255);
-            lut[i] = Math.max(0, Math.min(255, lut[i]));
-        }
-        return applyLut(img, lut);
-    }
 
-    public static BufferedImage binarizeManual(BufferedImage img, int thr) {
-        int w=img.getWidth(), h=img.getHeight();
-        BufferedImage res = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
-        for(int y=0; y<h; y++){
-            for(int x=0; x<w; x++){
-                int val = img.getRGB(x,y)&0xFF;
-                int newV = (val<thr)?0:255;
-                res.setRGB(x,y, (newV<<16)|(newV<<8)|newV);
+        if (thresholds != null) {
+            g.setColor(Color.RED);
+            for (int t : thresholds) {
+                int x = (int) (t * xStep);
+                g.drawLine(x, 0, x, h);
             }
         }
-        return res;
-    }
 
-    public static BufferedImage binarizePercentBlack(BufferedImage img, double p) {
-        int[] h = calculateHistogram(img);
-        int total = img.getWidth()*img.getHeight();
-        int target = (int)(total*p);
-        int sum=0, thr=128;
-        for(int i=0; i<256; i++){
-            sum+=h[i];
-            if(sum>=target){ thr=i; break;}
-        }
-        return binarizeManual(img, thr);
-    }
-
-    public static BufferedImage binarizeIterativeMean(BufferedImage img) {
-        int[] h = calculateHistogram(img);
-        double t = 127, oldT;
-        do {
-            oldT = t;
-            double sB=0, wB=0, sF=0, wF=0;
-            for(int i=0; i<256; i++) {
-                if(i<t) { sB+=i*h[i]; wB+=h[i]; }
-                else    { sF+=i*h[i]; wF+=h[i]; }
-            }
-            if(wB==0) wB=1; if(wF==0) wF=1;
-            t = ((sB/wB) + (sF/wF))/2.0;
-        } while(Math.abs(t-oldT)>0.5);
-        return binarizeManual(img, (int)t);
-    }
-
-    private static BufferedImage applyLut(BufferedImage src, int[] lut) {
-        BufferedImage res = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        for(int y=0;y<src.getHeight();y++)
-            for(int x=0;x<src.getWidth();x++) {
-                int v = lut[src.getRGB(x,y)&0xFF];
-                res.setRGB(x,y, (v<<16)|(v<<8)|v);
+        if (channels == null) return;
+        for (int c = 0; c < channels.length; c++) {
+            g.setColor(CHANNEL_COLORS[c]);
+            int prevX = 0, prevY = h - (int) (((double) channels[c][0] / maxVal) * (h - 20));
+            for (int i = 1; i < 256; i++) {
+                int x = (int) (i * xStep);
+                int y = h - (int) (((double) channels[c][i] / maxVal) * (h - 20));
+                g.drawLine(prevX, prevY, x, y);
+                prevX = x;
+                prevY = y;
             }
-        return res;
+        }
     }
-}
\ No newline at end of file
+}
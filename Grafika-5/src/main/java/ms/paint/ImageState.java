@@ -0,0 +1,66 @@
+package ms.paint;
+
+import java.awt.image.BufferedImage;
+
+// --- KLASA POMOCNICZA: OBRAZ ROBOCZY RAZEM Z JEGO HISTOGRAMEM ---
+// Histogram jest liczony z rastra tylko przy podmianie obrazu (wczytanie, konwersja do szarości,
+// operacje przestrzenne). Operacja LUT na szarości przesuwa jedynie zawartość koszy:
+// nowy[lut[v]] += stary[v], czyli O(256) zamiast ponownego przejścia po wszystkich pikselach.
+class ImageState {
+
+    private BufferedImage image;
+    private HistogramEngine.Histogram histogram;
+    // Tablice skumulowane dla bieżącego histogramu, tworzone przy pierwszym użyciu
+    private ThresholdEngine thresholds;
+
+    ImageState(BufferedImage image) {
+        replace(image);
+    }
+
+    BufferedImage image() {
+        return image;
+    }
+
+    HistogramEngine.Histogram histogram() {
+        return histogram;
+    }
+
+    // Histogram luminancji (dla obrazu szarego - poziomów szarości)
+    int[] luminance() {
+        return histogram.luminance;
+    }
+
+    ThresholdEngine thresholds() {
+        if (thresholds == null) thresholds = new ThresholdEngine(histogram.luminance);
+        return thresholds;
+    }
+
+    // Dowolna zmiana obrazu - histogram liczony od nowa
+    void replace(BufferedImage newImage) {
+        image = newImage;
+        histogram = HistogramEngine.compute(newImage);
+        thresholds = null;
+    }
+
+    // Tablica LUT stosowana w miejscu; null = operacja nic nie zmienia (np. rozciąganie płaskiego histogramu)
+    void applyLut(int[] lut) {
+        if (lut == null) return;
+        if (!RasterUtils.isPackedGray(image)) {
+            // Obraz nie jest zwartą szarością - applyLut najpierw go konwertuje, więc liczymy od nowa
+            replace(ImageAlgorithms.applyLut(image, lut, true));
+            return;
+        }
+        ImageAlgorithms.applyLut(image, lut, true);
+        histogram = new HistogramEngine.Histogram(remap(histogram.luminance, lut), null, null, null);
+        thresholds = null;
+    }
+
+    // Histogram po przejściu przez LUT, wyznaczony z poprzedniego histogramu
+    static int[] remap(int[] hist, int[] lut) {
+        int[] result = new int[HistogramEngine.BINS];
+        for (int v = 0; v < HistogramEngine.BINS; v++) {
+            result[Math.max(0, Math.min(255, lut[v]))] += hist[v];
+        }
+        return result;
+    }
+}
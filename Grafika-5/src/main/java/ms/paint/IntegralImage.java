@@ -0,0 +1,100 @@
+package ms.paint;
+
+// --- KLASA POMOCNICZA: OBRAZ CAŁKOWY (SUMMED-AREA TABLE) ---
+// T[y][x] = suma wartości (albo ich kwadratów) w prostokącie [0, x) x [0, y); tablica ma wymiary
+// (w+1) x (h+1) z zerowym pierwszym wierszem i kolumną. Suma dowolnego prostokąta to 4 odczyty.
+// Budowa równoległa w dwóch przejściach: sumy prefiksowe w wierszach (pasy wierszy), potem
+// akumulacja w dół (pasy kolumn). Zapytania dotyczą tylko prostokątów o polu <= maxArea, więc
+// gdy max. wartość * maxArea < 2^32, wystarcza int[] z arytmetyką modulo 2^32 (różnica czterech
+// narożników jest wtedy dokładna, nawet jeśli same narożniki się przepełniły). Inaczej long[].
+abstract class IntegralImage {
+
+    final int width;
+    final int height;
+    final int stride;
+
+    private IntegralImage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+    }
+
+    // Suma w prostokącie [x0, x1) x [y0, y1)
+    abstract long sum(int x0, int y0, int x1, int y1);
+
+    static IntegralImage of(byte[] gray, int width, int height, boolean squared, long maxArea) {
+        if ((long) (width + 1) * (height + 1) > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Obraz za duży na obraz całkowy: " + width + "x" + height);
+        long maxValue = squared ? 255L * 255 : 255L;
+        return maxValue * maxArea <= 0xFFFFFFFFL
+                ? new IntTable(gray, width, height, squared)
+                : new LongTable(gray, width, height, squared);
+    }
+
+    static final class IntTable extends IntegralImage {
+        private final int[] t;
+
+        IntTable(byte[] gray, int width, int height, boolean squared) {
+            super(width, height);
+            int[] t = new int[stride * (height + 1)];
+            RasterUtils.forEachRowBand(width, height, (yStart, yEnd) -> {
+                for (int y = yStart; y < yEnd; y++) {
+                    int acc = 0;
+                    for (int x = 0, i = y * width, o = (y + 1) * stride + 1; x < width; x++, i++, o++) {
+                        int v = gray[i] & 0xFF;
+                        acc += squared ? v * v : v;
+                        t[o] = acc;
+                    }
+                }
+            });
+            // Pasy kolumn: "wiersz" to tu kolumna o wysokości height
+            RasterUtils.forEachRowBand(height, width, (xStart, xEnd) -> {
+                for (int y = 2; y <= height; y++) {
+                    for (int o = y * stride + xStart + 1, end = y * stride + xEnd + 1; o < end; o++) {
+                        t[o] += t[o - stride];
+                    }
+                }
+            });
+            this.t = t;
+        }
+
+        @Override
+        long sum(int x0, int y0, int x1, int y1) {
+            int a = y0 * stride, b = y1 * stride;
+            return (t[b + x1] - t[a + x1] - t[b + x0] + t[a + x0]) & 0xFFFFFFFFL;
+        }
+    }
+
+    static final class LongTable extends IntegralImage {
+        private final long[] t;
+
+        LongTable(byte[] gray, int width, int height, boolean squared) {
+            super(width, height);
+            long[] t = new long[stride * (height + 1)];
+            RasterUtils.forEachRowBand(width, height, (yStart, yEnd) -> {
+                for (int y = yStart; y < yEnd; y++) {
+                    long acc = 0;
+                    for (int x = 0, i = y * width, o = (y + 1) * stride + 1; x < width; x++, i++, o++) {
+                        int v = gray[i] & 0xFF;
+                        acc += squared ? v * v : v;
+                        t[o] = acc;
+                    }
+                }
+            });
+            RasterUtils.forEachRowBand(height, width, (xStart, xEnd) -> {
+                for (int y = 2; y <= height; y++) {
+                    for (int o = y * stride + xStart + 1, end = y * stride + xEnd + 1; o < end; o++) {
+                        t[o] += t[o - stride];
+                    }
+                }
+            });
+            this.t = t;
+        }
+
+        @Override
+        long sum(int x0, int y0, int x1, int y1) {
+            int a = y0 * stride, b = y1 * stride;
+            return t[b + x1] - t[a + x1] - t[b + x0] + t[a + x0];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ms.paint;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// --- KLASA POMOCNICZA: BEZPOŚREDNI DOSTĘP DO RASTRA SZAROŚCI I PODZIAŁ NA PASY WIERSZY ---
+class RasterUtils {
+
+    // Poniżej tej liczby pikseli pas nie jest już dzielony
+    static final int MIN_BAND_PIXELS = 1 << 16;
+
+    @FunctionalInterface
+    interface RowBandTask {
+        // Przetwarza wiersze [yStart, yEnd)
+        void run(int yStart, int yEnd);
+    }
+
+    private RasterUtils() {
+    }
+
+    // true, gdy obraz TYPE_BYTE_GRAY ma zwartą tablicę: piksel (x, y) leży pod indeksem y * width + x
+    static boolean isPackedGray(BufferedImage img) {
+        if (img.getType() != BufferedImage.TYPE_BYTE_GRAY) return false;
+        Raster raster = img.getRaster();
+        return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getOffset() == 0
+                && ((DataBufferByte) raster.getDataBuffer()).getData().length == img.getWidth() * img.getHeight();
+    }
+
+    // Nowy zwarty TYPE_BYTE_GRAY narysowany z dowolnego obrazu (konwersja przez Java2D)
+    static BufferedImage toPackedGray(BufferedImage src) {
+        BufferedImage res = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics g = res.getGraphics();
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return res;
+    }
+
+    // Poziomy szarości leżące pod obrazem (bez kopiowania) - tylko dla isPackedGray
+    static byte[] grayPixels(BufferedImage img) {
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    }
+
+    // Dzieli wiersze [0, height) na pasy i wykonuje je równolegle w ForkJoinPool
+    static void forEachRowBand(int width, int height, RowBandTask task) {
+        if (height <= 0) return;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int minRows = Math.max(1, MIN_BAND_PIXELS / Math.max(1, width));
+        int bandHeight = Math.max(minRows, (height + parallelism * 4 - 1) / (parallelism * 4));
+        if (height <= bandHeight) {
+            task.run(0, height);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new RowBandAction(task, 0, height, bandHeight));
+    }
+
+    private static class RowBandAction extends RecursiveAction {
+        private final RowBandTask task;
+        private final int yStart;
+        private final int yEnd;
+        private final int bandHeight;
+
+        RowBandAction(RowBandTask task, int yStart, int yEnd, int bandHeight) {
+            this.task = task;
+            this.yStart = yStart;
+            this.yEnd = yEnd;
+            this.bandHeight = bandHeight;
+        }
+
+        @Override
+        protected void compute() {
+            if (yEnd - yStart <= bandHeight) {
+                task.run(yStart, yEnd);
+                return;
+            }
+            int bands = (yEnd - yStart + bandHeight - 1) / bandHeight;
+            int mid = yStart + (bands / 2) * bandHeight;
+            invokeAll(new RowBandAction(task, yStart, mid, bandHeight),
+                    new RowBandAction(task, mid, yEnd, bandHeight));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ms.paint;
+
+// --- KLASA POMOCNICZA: PROGI GLOBALNE Z SKUMULOWANYCH MOMENTÓW HISTOGRAMU ---
+// Raz liczone są tablice skumulowane: liczba pikseli P[k], moment S[k] = suma i*h[i] oraz
+// entropia E[k] = suma p_i*ln(p_i) dla poziomów 0..k. Każda klasa [a, b] ma wtedy liczność,
+// sumę i entropię w O(1), więc Otsu, Kapur i Li to jedno przejście po 256 progach,
+// metoda iteracyjna robi O(1) na iterację, a wielopoziomowy Otsu to programowanie dynamiczne
+// po tych samych tablicach (K progów: O(K * 256^2)).
+// Zwracany próg t ma znaczenie jak w binarizeManual: piksele < t należą do klasy ciemnej.
+class ThresholdEngine {
+
+    static final int LEVELS = HistogramEngine.BINS;
+    static final int MAX_MULTI_THRESHOLDS = 4;
+
+    private final long[] count = new long[LEVELS];
+    private final long[] moment = new long[LEVELS];
+    private final double[] entropy = new double[LEVELS];
+    private final long total;
+
+    ThresholdEngine(int[] histogram) {
+        long n = 0, s = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            n += histogram[i];
+            s += (long) i * histogram[i];
+            count[i] = n;
+            moment[i] = s;
+        }
+        total = n;
+        double e = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            if (histogram[i] > 0) {
+                double p = (double) histogram[i] / total;
+                e += p * Math.log(p);
+            }
+            entropy[i] = e;
+        }
+    }
+
+    // Liczność i suma klasy [a, b]
+    private long count(int a, int b) { return count[b] - (a > 0 ? count[a - 1] : 0); }
+    private long moment(int a, int b) { return moment[b] - (a > 0 ? moment[a - 1] : 0); }
+
+    // Otsu: maksimum wariancji międzyklasowej w0 * w1 * (m0 - m1)^2
+    int otsu() {
+        int best = 0;
+        double bestVar = -1;
+        for (int k = 0; k < LEVELS - 1; k++) {
+            long w0 = count[k], w1 = total - w0;
+            if (w0 == 0 || w1 == 0) continue;
+            double m0 = (double) moment[k] / w0;
+            double m1 = (double) (moment[LEVELS - 1] - moment[k]) / w1;
+            double var = (double) w0 * w1 * (m0 - m1) * (m0 - m1);
+            if (var > bestVar) {
+                bestVar = var;
+                best = k;
+            }
+        }
+        return best + 1;
+    }
+
+    // Wielopoziomowy Otsu dla 2..4 progów. Maksymalizacja wariancji międzyklasowej sprowadza się
+    // do maksymalizacji sumy S_c^2 / P_c po klasach; best[c][j] = najlepszy podział [0, j] na c+1 klas.
+    int[] multiOtsu(int thresholds) {
+        if (thresholds < 1 || thresholds > MAX_MULTI_THRESHOLDS)
+            throw new IllegalArgumentException("Liczba progów spoza zakresu 1.." + MAX_MULTI_THRESHOLDS + ": " + thresholds);
+        double[][] best = new double[thresholds + 1][LEVELS];
+        int[][] split = new int[thresholds + 1][LEVELS];
+        for (int j = 0; j < LEVELS; j++) best[0][j] = classScore(0, j);
+        for (int c = 1; c <= thresholds; c++) {
+            for (int j = c; j < LEVELS; j++) {
+                double bestValue = Double.NEGATIVE_INFINITY;
+                int bestSplit = c - 1;
+                for (int i = c - 1; i < j; i++) {
+                    double v = best[c - 1][i] + classScore(i + 1, j);
+                    if (v > bestValue) {
+                        bestValue = v;
+                        bestSplit = i;
+                    }
+                }
+                best[c][j] = bestValue;
+                split[c][j] = bestSplit;
+            }
+        }
+        // Odtworzenie granic od końca: koniec klasy c-1 to split[c][j]
+        int[] result = new int[thresholds];
+        for (int c = thresholds, j = LEVELS - 1; c >= 1; c--) {
+            j = split[c][j];
+            result[c - 1] = j + 1;
+        }
+        return result;
+    }
+
+    private double classScore(int a, int b) {
+        long n = count(a, b);
+        if (n == 0) return 0;
+        double s = moment(a, b);
+        return s * s / n;
+    }
+
+    // Kapur: maksimum sumy entropii obu klas (rozkłady p_i / P_klasy)
+    int kapur() {
+        int best = 0;
+        double bestH = Double.NEGATIVE_INFINITY;
+        double eTotal = entropy[LEVELS - 1];
+        for (int k = 0; k < LEVELS - 1; k++) {
+            double p0 = (double) count[k] / total, p1 = 1 - p0;
+            if (count[k] == 0 || count[k] == total) continue;
+            double h0 = Math.log(p0) - entropy[k] / p0;
+            double h1 = Math.log(p1) - (eTotal - entropy[k]) / p1;
+            if (h0 + h1 > bestH) {
+                bestH = h0 + h1;
+                best = k;
+            }
+        }
+        return best + 1;
+    }
+
+    // Li: minimum entropii skrośnej między obrazem a jego wersją dwupoziomową (średnie klas).
+    // Stała część sumy i*h[i]*ln(i) jest pomijana - zostaje -S0*ln(m0) - S1*ln(m1).
+    int li() {
+        int best = 0;
+        double bestEta = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < LEVELS - 1; k++) {
+            long n0 = count[k], n1 = total - n0;
+            if (n0 == 0 || n1 == 0) continue;
+            double eta = -crossTerm(moment[k], n0) - crossTerm(moment[LEVELS - 1] - moment[k], n1);
+            if (eta < bestEta) {
+                bestEta = eta;
+                best = k;
+            }
+        }
+        return best + 1;
+    }
+
+    private static double crossTerm(long sum, long n) {
+        return sum > 0 ? sum * Math.log((double) sum / n) : 0;
+    }
+
+    // Średnia iteracyjna (jak binarizeIterativeMean): klasy i < t oraz i >= t, każda iteracja w O(1)
+    int iterativeMean() {
+        double t = 127, oldT;
+        do {
+            oldT = t;
+            int k = Math.min(LEVELS - 1, (int) Math.ceil(t) - 1); // ostatni poziom z i < t
+            double wB = k >= 0 ? count[k] : 0, sB = k >= 0 ? moment[k] : 0;
+            double wF = total - wB, sF = moment[LEVELS - 1] - sB;
+            if (wB == 0) wB = 1;
+            if (wF == 0) wF = 1;
+            t = ((sB / wB) + (sF / wF)) / 2.0;
+        } while (Math.abs(t - oldT) > 0.5);
+        return (int) t;
+    }
+
+    // Najmniejszy poziom i, dla którego liczba pikseli <= i osiąga ułamek p (dla pustego progu 128)
+    int percentBlack(double p) {
+        long target = (long) (total * p);
+        for (int i = 0; i < LEVELS; i++) {
+            if (count[i] >= target) return i;
+        }
+        return 128;
+    }
+}